@@ -3,6 +3,9 @@ package app;
 import app.config.ApplicationConfig;
 import app.config.HibernateConfig;
 import app.config.Populate;
+import app.config.SyntheticCatalogGenerator;
+import app.search.TypeaheadIndex;
+import app.utils.Utils;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 
@@ -11,9 +14,20 @@ import jakarta.persistence.EntityManagerFactory;
 public class Main {
     public static void main(String[] args) {
 
-        System.out.println("Populating database...");
-        Populate.seed(HibernateConfig.getEntityManagerFactory());
-        System.out.println("Done seeding!");
+        EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
+        if (Populate.isSeeded(emf)) {
+            System.out.println("Database already seeded");
+        } else {
+            System.out.println("Populating database...");
+            Populate.seed(emf);
+            // SEED_MODE=synthetic adds a large generated catalog on top of the sample data, for load testing
+            if ("synthetic".equalsIgnoreCase(Utils.getConfigValue("SEED_MODE", "sample"))) {
+                new SyntheticCatalogGenerator(SyntheticCatalogGenerator.Settings.fromConfig()).generate(emf);
+            }
+            System.out.println("Done seeding!");
+        }
+        // Built here so the first typeahead request does not wait for the scan
+        TypeaheadIndex.getInstance().ensureBuilt(emf);
 
         ApplicationConfig.startServer(7076);}
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package app.cache;
+
+import app.cache.ResourceVersions.Collection;
+import app.dtos.AlbumDTO;
+import app.dtos.ArtistDTO;
+import app.dtos.SongDTO;
+import app.utils.Utils;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Purpose: Read-through cache for the catalog DTOs (songs, artists, albums).
+ * The DAO write methods call the *Changed methods, which also drop the cached DTOs
+ * that copy a name from the changed entity (SongDTO.mainArtistName, SongDTO.albumName, AlbumDTO.artistName),
+ * and move the collection ETags in ResourceVersions.
+ */
+public class CatalogCache {
+
+    private static CatalogCache instance;
+
+    private final LruCache<Integer, SongDTO> songs;
+    private final LruCache<Integer, ArtistDTO> artists;
+    private final LruCache<Integer, AlbumDTO> albums;
+    private final ResourceVersions versions = ResourceVersions.getInstance();
+
+    private CatalogCache() {
+        // CATALOG_CACHE_SIZE=0 turns the cache off
+        int maxSize = Utils.getConfigInt("CATALOG_CACHE_SIZE", 10_000);
+        long ttlMillis = Utils.getConfigLong("CATALOG_CACHE_TTL_SECONDS", 300) * 1000;
+        this.songs = new LruCache<>("songs", maxSize, ttlMillis);
+        this.artists = new LruCache<>("artists", maxSize, ttlMillis);
+        this.albums = new LruCache<>("albums", maxSize, ttlMillis);
+    }
+
+    public static synchronized CatalogCache getInstance() {
+        if (instance == null) {
+            instance = new CatalogCache();
+        }
+        return instance;
+    }
+
+    public LruCache<Integer, SongDTO> songs() {
+        return songs;
+    }
+
+    public LruCache<Integer, ArtistDTO> artists() {
+        return artists;
+    }
+
+    public LruCache<Integer, AlbumDTO> albums() {
+        return albums;
+    }
+
+    // Nothing cached yet for new rows, only the collections change
+    public void songsAdded() {
+        versions.changed(Collection.SONGS);
+    }
+
+    public void albumAdded() {
+        versions.changed(Collection.ALBUMS);
+    }
+
+    public void artistAdded() {
+        versions.changed(Collection.ARTISTS);
+    }
+
+    public void songChanged(int songId) {
+        songs.invalidate(songId);
+        versions.changed(Collection.SONGS);
+    }
+
+    public void albumChanged(int albumId) {
+        albums.invalidate(albumId);
+        songs.invalidateIf(song -> Objects.equals(song.getAlbumId(), albumId));
+        versions.changed(Collection.ALBUMS, Collection.SONGS);
+    }
+
+    // Only the album's total changed, its songs are still valid
+    public void albumTotalsChanged(int albumId) {
+        albums.invalidate(albumId);
+        versions.changed(Collection.ALBUMS);
+    }
+
+    public void artistChanged(int artistId) {
+        artists.invalidate(artistId);
+        albums.invalidateIf(album -> Objects.equals(album.getArtistId(), artistId));
+        songs.invalidateIf(song -> Objects.equals(song.getMainArtistId(), artistId));
+        versions.changed(Collection.ARTISTS, Collection.ALBUMS, Collection.SONGS);
+    }
+
+    // Deleting an artist cascades to its albums, and with them to songs that may have another main artist
+    public void artistDeleted(int artistId, Set<Integer> albumIds) {
+        artistChanged(artistId);
+        songs.invalidateIf(song -> albumIds.contains(song.getAlbumId()));
+    }
+
+    public void clear() {
+        songs.clear();
+        artists.clear();
+        albums.clear();
+    }
+
+    public List<LruCache.Stats> stats() {
+        return List.of(songs.stats(), artists.stats(), albums.stats());
+    }
+}
@@ -0,0 +1,127 @@
+package app.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Purpose: Size bounded in-process cache with LRU eviction and a time to live per entry.
+ * Counts hits, misses, evictions and expirations so the size can be tuned.
+ */
+public class LruCache<K, V> {
+
+    public record Stats(String name, int size, int maxSize, long hits, long misses, long evictions, long expirations) {
+    }
+
+    private record CachedValue<V>(V value, long expiresAt) {
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, CachedValue<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    // Bumped on every invalidation, so a value loaded before a write is never put back afterwards
+    private long generation;
+
+    public LruCache(String name, int maxSize, long ttlMillis) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        // accessOrder = true keeps the least recently used entry first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        CachedValue<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    // Like get, but neither counted as a hit or miss nor removing an expired entry. Used for If-None-Match
+    public synchronized V peek(K key) {
+        CachedValue<V> entry = entries.get(key);
+        return entry == null || entry.expiresAt() < System.currentTimeMillis() ? null : entry.value();
+    }
+
+    // Read-through: the loader runs outside the lock, null results are not cached
+    public V getOrLoad(K key, Function<K, V> loader) {
+        if (maxSize <= 0) {
+            return loader.apply(key);
+        }
+        long loadGeneration;
+        synchronized (this) {
+            V cached = get(key);
+            if (cached != null) {
+                return cached;
+            }
+            loadGeneration = generation;
+        }
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            synchronized (this) {
+                if (loadGeneration == generation) {
+                    put(key, loaded);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttlMillis);
+    }
+
+    public synchronized void put(K key, V value, long ttlMillis) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            return;
+        }
+        entries.put(key, new CachedValue<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    // Used for cross-entity keys, e.g. every cached song of an artist that was renamed
+    public synchronized void invalidateIf(Predicate<V> predicate) {
+        generation++;
+        entries.values().removeIf(entry -> predicate.test(entry.value()));
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(name, entries.size(), maxSize, hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+}
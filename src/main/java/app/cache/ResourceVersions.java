@@ -0,0 +1,135 @@
+package app.cache;
+
+import app.utils.Utils;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Purpose: The validators for conditional GETs (If-None-Match), kept in memory so a 304 needs no query.
+ * Single resources have strong ETags built from the @Version columns, for songs and artists carried by the
+ * DTOs in CatalogCache, for playlists remembered here. Collections have weak ETags from a generation counter
+ * per collection, bumped by every write that changes what the collection shows. Starting the process
+ * changes them all, the counters are not persisted.
+ */
+public class ResourceVersions {
+
+    public enum Collection {SONGS, ARTISTS, ALBUMS, PLAYLISTS}
+
+    private static ResourceVersions instance;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Collection, Long> generations = new EnumMap<>(Collection.class);
+    private final LruCache<Integer, String> playlists;
+
+    private ResourceVersions() {
+        for (Collection collection : Collection.values()) {
+            generations.put(collection, 0L);
+        }
+        int maxSize = Utils.getConfigInt("CATALOG_CACHE_SIZE", 10_000);
+        long ttlMillis = Utils.getConfigLong("CATALOG_CACHE_TTL_SECONDS", 300) * 1000;
+        this.playlists = new LruCache<>("playlist-etags", maxSize, ttlMillis);
+    }
+
+    public static synchronized ResourceVersions getInstance() {
+        if (instance == null) {
+            instance = new ResourceVersions();
+        }
+        return instance;
+    }
+
+    // "s12-3.0.7": the id, then the versions of every row the representation copies a value from
+    public static String strong(String prefix, int id, long... versions) {
+        StringBuilder etag = new StringBuilder("\"").append(prefix).append(id).append('-');
+        for (int i = 0; i < versions.length; i++) {
+            if (i > 0) {
+                etag.append('.');
+            }
+            etag.append(versions[i]);
+        }
+        return etag.append('"').toString();
+    }
+
+    // W/"songs-<epoch>-<generation>", one name and generation per collection the response is built from.
+    // Read before the collection is queried, so a write that lands in between only costs the client a 200
+    public synchronized String weak(Collection... collections) {
+        StringBuilder names = new StringBuilder();
+        StringBuilder counts = new StringBuilder();
+        for (Collection collection : collections) {
+            if (!names.isEmpty()) {
+                names.append('.');
+                counts.append('.');
+            }
+            names.append(collection.name().toLowerCase(Locale.ROOT));
+            counts.append(generations.get(collection));
+        }
+        return "W/\"" + names + "-" + epoch + "-" + counts + "\"";
+    }
+
+    public synchronized long generation(Collection collection) {
+        return generations.get(collection);
+    }
+
+    public synchronized void changed(Collection... collections) {
+        for (Collection collection : collections) {
+            generations.merge(collection, 1L, Long::sum);
+        }
+    }
+
+    public String playlistETag(int playlistId) {
+        return playlists.peek(playlistId);
+    }
+
+    // Skipped when a playlist changed since the generation was read, the ETag may then belong to older rows
+    public synchronized void rememberPlaylist(int playlistId, String etag, long playlistsGeneration) {
+        if (generations.get(Collection.PLAYLISTS) == playlistsGeneration) {
+            playlists.put(playlistId, etag);
+        }
+    }
+
+    public synchronized void playlistChanged(int playlistId) {
+        playlists.invalidate(playlistId);
+        changed(Collection.PLAYLISTS);
+    }
+
+    // Song updates and deletes move the totals and entries of playlists that are not known here
+    public synchronized void playlistsChanged() {
+        playlists.clear();
+        changed(Collection.PLAYLISTS);
+    }
+
+    // Sets the ETag header, and answers 304 when If-None-Match already names it. Returns true when it did
+    public static boolean notModified(Context ctx, String etag) {
+        if (etag == null) {
+            return false;
+        }
+        ctx.header(Header.ETAG, etag);
+        if (matches(ctx.header(Header.IF_NONE_MATCH), etag)) {
+            ctx.status(304);
+            return true;
+        }
+        return false;
+    }
+
+    // If-None-Match uses the weak comparison, W/ is ignored on both sides
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || stripWeak(trimmed).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -1,6 +1,8 @@
 package app.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import app.metrics.QueryCounter;
+import app.metrics.RequestMetrics;
 import app.routes.Routes;
 import app.security.controllers.AccessController;
 import app.security.controllers.SecurityController;
@@ -9,22 +11,43 @@ import app.security.exceptions.ApiException;
 import app.security.routes.SecurityRoutes;
 import app.utils.Utils;
 import io.javalin.Javalin;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Gzip;
 import io.javalin.config.JavalinConfig;
 import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class ApplicationConfig {
 
     private static Routes routes = new Routes();
     private static ObjectMapper jsonMapper = new Utils().getObjectMapper();
     private static SecurityController securityController = SecurityController.getInstance();
     private static AccessController accessController = new AccessController();
+    private static RequestMetrics requestMetrics = RequestMetrics.getInstance();
     private static Logger logger = LoggerFactory.getLogger(ApplicationConfig.class);
-    private static int count = 1;
+    private static final AtomicLong count = new AtomicLong();
+    // Endpoints that do not hold a pool connection while they run, exempt from CONCURRENCY_LIMIT.
+    // Login and register look the user up once, then wait on the hashing executor
+    private static final List<String> NO_POOL_PATHS = List.of(
+            "/api/metrics/", "/api/routes", "/api/search/typeahead", "/api/auth/");
+    // Log every n-th successful request (1 = all of them), errors are always logged
+    private static final int requestLogSampleRate = Math.max(1, Utils.getConfigInt("REQUEST_LOG_SAMPLE_RATE", 1));
+    // X-Query-Count response header with the statement counts, on by default outside deployment
+    private static final boolean queryCountHeader = Utils.getConfigBoolean("QUERY_COUNT_HEADER", System.getenv("DEPLOYED") == null);
 
     public static void configuration(JavalinConfig config) {
         config.showJavalinBanner = false;
+        // One virtual thread per request instead of Jetty's platform thread pool (Java 21)
+        config.useVirtualThreads = Utils.getConfigBoolean("VIRTUAL_THREADS", false);
+        // The shared, tuned mapper instead of Javalin's own default instance
+        config.jsonMapper(new JavalinJackson(jsonMapper, config.useVirtualThreads));
+        configureCompression(config);
         config.bundledPlugins.enableRouteOverview("/routes", Role.ANYONE);
         config.router.contextPath = "/api"; // base path for all endpoints
         config.router.apiBuilder(routes.getRoutes());
@@ -32,10 +55,37 @@ public class ApplicationConfig {
         config.router.apiBuilder(SecurityRoutes.getSecurityRoutes());
     }
 
+    // COMPRESSION=brotli (brotli, else gzip, by Accept-Encoding), gzip or none. Bodies under
+    // COMPRESSION_MIN_BYTES are sent as they are, below about one packet compressing saves nothing
+    private static void configureCompression(JavalinConfig config) {
+        String mode = Utils.getConfigValue("COMPRESSION", "brotli").toLowerCase();
+        if (mode.equals("none")) {
+            config.http.disableCompression();
+            return;
+        }
+        Gzip gzip = new Gzip(Utils.getConfigInt("COMPRESSION_GZIP_LEVEL", 6));
+        // Javalin leaves brotli out, with a warning, when the brotli4j native library cannot be loaded
+        CompressionStrategy strategy = mode.equals("gzip")
+                ? new CompressionStrategy(null, gzip)
+                : new CompressionStrategy(new Brotli(Utils.getConfigInt("COMPRESSION_BROTLI_LEVEL", 4)), gzip);
+        strategy.setDefaultMinSizeForCompression(Utils.getConfigInt("COMPRESSION_MIN_BYTES", 1500));
+        config.http.customCompression(strategy);
+    }
+
     public static Javalin startServer(int port) {
         Javalin app = Javalin.create(ApplicationConfig::configuration);
 
+        // First, so the time spent waiting for the concurrency limit counts as latency
+        app.before(requestMetrics::start);
+        app.before(ctx -> QueryCounter.start());
+        app.beforeMatched(requestMetrics::matched);
         app.beforeMatched(accessController::accessHandler);
+        // After the access check, so rejected and unmatched requests never hold a permit
+        ConcurrencyLimiter limiter = createConcurrencyLimiter();
+        if (limiter != null) {
+            app.beforeMatched(limiter::acquire);
+            app.after(limiter::release);
+        }
         app.after(ApplicationConfig::afterRequest);
 
         app.exception(Exception.class, ApplicationConfig::generalExceptionHandler);
@@ -44,9 +94,34 @@ public class ApplicationConfig {
         return app;
     }
 
+    // Virtual threads default to one request per pool connection, CONCURRENCY_LIMIT=0 turns the limit off
+    private static ConcurrencyLimiter createConcurrencyLimiter() {
+        boolean virtualThreads = Utils.getConfigBoolean("VIRTUAL_THREADS", false);
+        int limit = Utils.getConfigInt("CONCURRENCY_LIMIT", virtualThreads ? HibernateConfig.getPoolMaxSize() : 0);
+        if (limit <= 0) {
+            return null;
+        }
+        logger.info("Limiting concurrent requests to {} (virtual threads: {})", limit, virtualThreads);
+        return new ConcurrencyLimiter(limit, Utils.getConfigLong("CONCURRENCY_TIMEOUT_MS", 5000), NO_POOL_PATHS);
+    }
+
     public static void afterRequest(Context ctx) {
-        String requestInfo = ctx.req().getMethod() + " " + ctx.req().getRequestURI();
-        logger.info(" Request {} - {} was handled with status code {}", count++, requestInfo, ctx.status());
+        String route = RequestMetrics.routeOf(ctx);
+        QueryCounter.Counts queries = QueryCounter.finish(route);
+        // After the query counts, so a request no longer in flight has reported them
+        long elapsedNanos = requestMetrics.finish(ctx);
+        // Streamed bodies larger than the response buffer are already committed, those go without the header
+        if (queries != null && queryCountHeader && !ctx.res().isCommitted()) {
+            ctx.header("X-Query-Count", queries.toString());
+        }
+        long requestNumber = count.incrementAndGet();
+        int status = ctx.status().getCode();
+        if (status < 400 && requestNumber % requestLogSampleRate != 0) {
+            return;
+        }
+        logger.info("request={} method={} uri={} route=\"{}\" status={} ms={}{}", requestNumber, ctx.req().getMethod(),
+                ctx.req().getRequestURI(), route, status, String.format("%.2f", elapsedNanos / 1e6),
+                queries != null ? " " + queries : "");
     }
 
     public static void stopServer(Javalin app) {
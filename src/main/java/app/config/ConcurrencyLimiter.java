@@ -0,0 +1,69 @@
+package app.config;
+
+import app.security.exceptions.ApiException;
+import io.javalin.http.Context;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Purpose: Caps how many requests run at once. With virtual threads Jetty no longer limits
+ * the number of handlers in flight, so without this every request would queue inside HikariCP
+ * waiting for one of its few connections. Requests that cannot get a permit within the
+ * timeout get a 503 instead of a Hikari connection timeout.
+ * Only endpoints that use the pool take a permit. The ones under the exempt path prefixes (metrics,
+ * in-memory typeahead, login while it waits on the hashing executor) never queue behind database work.
+ */
+public class ConcurrencyLimiter {
+
+    private static final String PERMIT_ATTRIBUTE = "concurrency-permit";
+
+    private final Semaphore permits;
+    private final int limit;
+    private final long timeoutMillis;
+    private final List<String> exemptPrefixes;
+
+    public ConcurrencyLimiter(int limit, long timeoutMillis, List<String> exemptPrefixes) {
+        this.limit = limit;
+        this.timeoutMillis = timeoutMillis;
+        this.exemptPrefixes = List.copyOf(exemptPrefixes);
+        this.permits = new Semaphore(limit, true);
+    }
+
+    // A beforeMatched handler, the endpoint's path template decides whether it needs a permit
+    public void acquire(Context ctx) throws InterruptedException {
+        if (!usesPool(ctx.endpointHandlerPath())) {
+            return;
+        }
+        if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new ApiException(503, "Server is busy, try again shortly");
+        }
+        ctx.attribute(PERMIT_ATTRIBUTE, true);
+    }
+
+    // Runs in the after handler, which Javalin also calls when the request failed
+    public void release(Context ctx) {
+        if (ctx.attribute(PERMIT_ATTRIBUTE) != null) {
+            ctx.attribute(PERMIT_ATTRIBUTE, null);
+            permits.release();
+        }
+    }
+
+    boolean usesPool(String path) {
+        for (String prefix : exemptPrefixes) {
+            if (path.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int available() {
+        return permits.availablePermits();
+    }
+}
@@ -1,6 +1,8 @@
 package app.config;
 
 import app.entities.*;
+import app.metrics.PoolMetrics;
+import app.metrics.QueryCounter;
 import app.security.entities.Role;
 import app.security.entities.User;
 import app.utils.Utils;
@@ -17,6 +19,7 @@ public class HibernateConfig {
     private static EntityManagerFactory emf;
     private static EntityManagerFactory emfTest;
     private static Boolean isTest = false;
+    private static boolean secondLevelCacheEnabled = false;
 
     public static void setTest(Boolean test) {
         isTest = test;
@@ -26,6 +29,10 @@ public class HibernateConfig {
         return isTest;
     }
 
+    public static boolean isSecondLevelCacheEnabled() {
+        return secondLevelCacheEnabled;
+    }
+
     public static EntityManagerFactory getEntityManagerFactory() {
         if (emf == null)
             emf = createEMF(getTest());
@@ -45,6 +52,7 @@ public class HibernateConfig {
         configuration.addAnnotatedClass(Album.class);
         configuration.addAnnotatedClass(Artist.class);
         configuration.addAnnotatedClass(Playlist.class);
+        configuration.addAnnotatedClass(PlaylistEntry.class);
         configuration.addAnnotatedClass(Song.class);
         configuration.addAnnotatedClass(UserProfile.class);
 
@@ -66,6 +74,18 @@ public class HibernateConfig {
             } else {
                 props = setDevProperties(props);
             }
+            // migrate: versioned migrations (SchemaMigrations). create: hbm2ddl rebuilds the schema on every start,
+            // without the search columns and indexes, so GET /api/search does not work there
+            boolean migrate = forTest || "migrate".equalsIgnoreCase(Utils.getConfigValue("SCHEMA_MODE", "migrate"));
+            if (migrate) {
+                props.put("hibernate.hbm2ddl.auto", "none");
+            }
+            setPoolProperties(props);
+            // Opt-in, as every cached entity has to be kept consistent with the DAO write paths
+            if (Utils.getConfigBoolean("L2_CACHE_ENABLED", false)) {
+                setSecondLevelCacheProperties(props);
+                secondLevelCacheEnabled = true;
+            }
             configuration.setProperties(props);
             getAnnotationConfiguration(configuration);
 
@@ -73,6 +93,10 @@ public class HibernateConfig {
                     .applySettings(configuration.getProperties())
                     .build();
             SessionFactory sf = configuration.buildSessionFactory(serviceRegistry);
+            if (migrate) {
+                SchemaMigrations.migrate(sf);
+            }
+            QueryCounter.registerListeners(sf);
             EntityManagerFactory emf = sf.unwrap(EntityManagerFactory.class);
             return emf;
         } catch (Throwable ex) {
@@ -86,9 +110,21 @@ public class HibernateConfig {
         props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
         props.put("hibernate.hbm2ddl.auto", "create");
         props.put("hibernate.current_session_context_class", "thread");
-        props.put("hibernate.show_sql", "true");
-        props.put("hibernate.format_sql", "true");
-        props.put("hibernate.use_sql_comments", "true");
+        // SQL echo to stdout is off unless SHOW_SQL=true, it costs a formatted print per statement
+        String showSql = String.valueOf(Utils.getConfigBoolean("SHOW_SQL", false));
+        props.put("hibernate.show_sql", showSql);
+        props.put("hibernate.format_sql", showSql);
+        props.put("hibernate.use_sql_comments", showSql);
+        // Statements slower than this are logged with their timing to the org.hibernate.SQL_SLOW logger (see logback.xml)
+        props.put("hibernate.log_slow_query", Utils.getConfigValue("SLOW_QUERY_THRESHOLD_MS", "200"));
+        // Counts statements per HTTP request and flags N+1 selects, see QueryCounter
+        props.put("hibernate.session_factory.statement_inspector", QueryCounter.class.getName());
+        // Group inserts/updates into JDBC batches, ordered by entity so each batch holds one statement
+        props.put("hibernate.jdbc.batch_size", Utils.getConfigValue("JDBC_BATCH_SIZE", "50"));
+        props.put("hibernate.order_inserts", "true");
+        props.put("hibernate.order_updates", "true");
+        // pooled-lo: a sequence value is the first id of the reserved block (see IdGeneration)
+        props.put("hibernate.id.optimizer.pooled.preferred", Utils.getConfigValue("ID_OPTIMIZER", "pooled-lo"));
         return props;
     }
 
@@ -108,6 +144,45 @@ public class HibernateConfig {
         return props;
     }
 
+    public static int getPoolMaxSize() {
+        return Utils.getConfigInt("DB_POOL_MAX_SIZE", 10);
+    }
+
+    // HikariCP pool. Every setting can be overridden by an env var (deployed) or config.properties (dev)
+    private static Properties setPoolProperties(Properties props) {
+        props.put("hibernate.connection.provider_class", "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+        props.put("hibernate.hikari.poolName", "phonyfy-pool");
+        props.put("hibernate.hikari.maximumPoolSize", String.valueOf(getPoolMaxSize()));
+        props.put("hibernate.hikari.minimumIdle", Utils.getConfigValue("DB_POOL_MIN_IDLE", "2"));
+        // How long a request may wait for a free connection before failing
+        props.put("hibernate.hikari.connectionTimeout", Utils.getConfigValue("DB_POOL_CONNECTION_TIMEOUT_MS", "5000"));
+        props.put("hibernate.hikari.idleTimeout", Utils.getConfigValue("DB_POOL_IDLE_TIMEOUT_MS", "600000"));
+        props.put("hibernate.hikari.maxLifetime", Utils.getConfigValue("DB_POOL_MAX_LIFETIME_MS", "1800000"));
+        // Logs a stack trace when a connection is held longer than this, 0 turns it off
+        props.put("hibernate.hikari.leakDetectionThreshold", Utils.getConfigValue("DB_POOL_LEAK_DETECTION_MS", "0"));
+        // Server side prepared statements in the PostgreSQL driver, cached per connection
+        props.put("hibernate.hikari.dataSource.prepareThreshold", Utils.getConfigValue("DB_PREPARE_THRESHOLD", "3"));
+        props.put("hibernate.hikari.dataSource.preparedStatementCacheQueries", Utils.getConfigValue("DB_PREPARED_STATEMENT_CACHE_QUERIES", "256"));
+        props.put("hibernate.hikari.dataSource.preparedStatementCacheSizeMiB", Utils.getConfigValue("DB_PREPARED_STATEMENT_CACHE_MIB", "5"));
+        // Hikari instantiates the tracker factory from its class name
+        props.put("hibernate.hikari.metricsTrackerFactory", PoolMetrics.class.getName());
+        return props;
+    }
+
+    // Regions and their sizes/TTLs are declared in resources/ehcache.xml
+    private static Properties setSecondLevelCacheProperties(Properties props) {
+        props.put("hibernate.cache.use_second_level_cache", "true");
+        props.put("hibernate.cache.use_query_cache", "true");
+        props.put("hibernate.cache.region.factory_class", "jcache");
+        props.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        props.put("hibernate.javax.cache.uri", "ehcache.xml");
+        props.put("hibernate.javax.cache.missing_cache_strategy", "create-warn");
+        // Only entities/collections annotated with @Cache are cached
+        props.put("jakarta.persistence.sharedCache.mode", "ENABLE_SELECTIVE");
+        props.put("hibernate.generate_statistics", "true");
+        return props;
+    }
+
     private static Properties setTestProperties(Properties props) {
         //props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
         props.put("hibernate.connection.driver_class", "org.testcontainers.jdbc.ContainerDatabaseDriver");
@@ -116,7 +191,7 @@ public class HibernateConfig {
         props.put("hibernate.connection.password", "postgres");
         props.put("hibernate.archive.autodetection", "class");
         props.put("hibernate.show_sql", "true");
-        props.put("hibernate.hbm2ddl.auto", "create-drop"); // update for production
+        props.put("hibernate.generate_statistics", "true"); // lets tests assert statement counts
         return props;
     }
 }
@@ -3,6 +3,7 @@ package app.config;
 import app.entities.*;
 import app.security.entities.Role;
 import app.security.entities.User;
+import app.utils.Durations;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityTransaction;
@@ -10,7 +11,9 @@ import jakarta.persistence.EntityTransaction;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class Populate {
 
@@ -20,32 +23,30 @@ public final class Populate {
     private record Track(String name, String genre, String featuredArtist, String mmss) {
     }
 
-    // Create artist + album + all tracks in one go
+    // Create artist + album + all tracks in one go. Artists created earlier in the seed are reused from the map
     private static Album addAlbumWithTracks(EntityManager em,
+                                            Map<String, Artist> artists,
                                             String artistName,
                                             String artistType,
                                             String albumName,
                                             LocalDate releaseDate,
                                             List<Track> tracks) {
 
-        Artist artist = em.createQuery("SELECT a FROM Artist a WHERE a.artistName = :name", Artist.class)
-                .setParameter("name", artistName)
-                .getResultStream()
-                .findFirst()
-                .orElse(null);
-
+        Artist artist = artists.get(artistName);
         if (artist == null) {
             artist = Artist.builder()
                     .artistName(artistName)
                     .type(artistType)
                     .build();
             em.persist(artist);
+            artists.put(artistName, artist);
         }
 
             Album album = Album.builder()
                     .albumName(albumName)
                     .releaseDate(releaseDate)
                     .artist(artist)
+                    .totalSeconds(tracks.stream().mapToInt(t -> Durations.parse(t.mmss())).sum())
                     .build();
             em.persist(album);
 
@@ -54,7 +55,7 @@ public final class Populate {
                 s.setSongName(t.name());
                 s.setGenre(t.genre());
                 s.setFeaturedArtist(t.featuredArtist);
-                s.setDuration(t.mmss());
+                s.setDurationSeconds(Durations.parse(t.mmss()));
                 s.setMainArtist(artist);
                 s.setAlbum(album);
                 em.persist(s);
@@ -78,6 +79,13 @@ public final class Populate {
 
         // ------------------------------------------------
 
+        // With SCHEMA_MODE=migrate the database survives restarts, so the sample data is only seeded once
+        public static boolean isSeeded(EntityManagerFactory emf) {
+            try (EntityManager em = emf.createEntityManager()) {
+                return em.createQuery("SELECT count(r) FROM Role r", Long.class).getSingleResult() > 0;
+            }
+        }
+
         public static void seed (EntityManagerFactory emf){
             EntityManager em = emf.createEntityManager();
             EntityTransaction tx = em.getTransaction();
@@ -115,8 +123,10 @@ public final class Populate {
                 em.persist(asgerProfile);
 
 
+                Map<String, Artist> artists = new HashMap<>();
+
                 // Daft Punk - Discovery
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Daft Punk", "Electronic music duo",
                         "Discovery", LocalDate.of(2001, 3, 12),
                         tracks(
@@ -139,7 +149,7 @@ public final class Populate {
 
 
                 // Linkin Park — Hybrid Theory (2000)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Linkin Park", "Band",
                         "Hybrid Theory", LocalDate.of(2000, 10, 24),
                         tracks(
@@ -160,7 +170,7 @@ public final class Populate {
 
 
                 // Eminem — The Eminem Show (2002)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Eminem", "Solo",
                         "The Eminem Show", LocalDate.of(2002, 5, 26),
                         tracks(
@@ -189,7 +199,7 @@ public final class Populate {
 
 
                 // Kanye West — Graduation (2007)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Kanye West", "Solo",
                         "Graduation", LocalDate.of(2007, 9, 11),
                         tracks(
@@ -212,7 +222,7 @@ public final class Populate {
 
 
                 // Sleep Token — Even in Arcadia (2024)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Sleep Token", "Band",
                         "Even in Arcadia", LocalDate.of(2024, 7, 19),
                         tracks(
@@ -234,7 +244,7 @@ public final class Populate {
 
 
                 // Mac Miller — Swimming (2018)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Mac Miller", "Solo",
                         "Swimming", LocalDate.of(2018, 8, 3),
                         tracks(
@@ -257,7 +267,7 @@ public final class Populate {
 
 
                 // Post Malone — Hollywood's Bleeding (2019)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Post Malone", "Solo",
                         "Hollywood's Bleeding", LocalDate.of(2019, 9, 6),
                         tracks(
@@ -284,7 +294,7 @@ public final class Populate {
 
 
                 // Volbeat — Outlaw Gentlemen & Shady Ladies (2013)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Volbeat", "Band",
                         "Outlaw Gentlemen & Shady Ladies", LocalDate.of(2013, 4, 5),
                         tracks(
@@ -308,7 +318,7 @@ public final class Populate {
 
 
                 // Lukas Graham — Lukas Graham (Blue Album) (2015)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Lukas Graham", "Band",
                         "Lukas Graham (Blue Album)", LocalDate.of(2015, 6, 16),
                         tracks(
@@ -329,7 +339,7 @@ public final class Populate {
 
 
                 // Travis Scott — Astroworld (2018)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Travis Scott", "Solo",
                         "Astroworld", LocalDate.of(2018, 8, 3),
                         tracks(
@@ -356,7 +366,7 @@ public final class Populate {
 
 
                 // Twenty One Pilots — Blurryface (2015)
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "Twenty One Pilots", "Duo",
                         "Blurryface", LocalDate.of(2015, 5, 17),
                         tracks(
@@ -380,7 +390,7 @@ public final class Populate {
 
 
                 // URO — Allerhest vil vi elskes
-                addAlbumWithTracks(em,
+                addAlbumWithTracks(em, artists,
                         "URO", "Solo",
                         "Allerhest vil vi elskes", LocalDate.of(2023, 2, 24),
                         tracks(
@@ -408,8 +418,7 @@ public final class Populate {
                         .playListName("Jonas – Mixed")
                         .owner(jonasProfile)
                         .build();
-                allSongs.stream().limit(13).forEach(j.getSongs()::add);
-                j.updateTotalDuration();
+                allSongs.stream().limit(13).forEach(j::addSong);
                 em.persist(j);
 
 
@@ -419,8 +428,7 @@ public final class Populate {
                         .playListName("Asger – Mixed")
                         .owner(asgerProfile)
                         .build();
-                allSongs.stream().limit(12).forEach(a.getSongs()::add);
-                a.updateTotalDuration();
+                allSongs.stream().limit(12).forEach(a::addSong);
                 em.persist(a);
 
                 tx.commit();
@@ -0,0 +1,484 @@
+package app.config;
+
+import app.entities.IdGeneration;
+import app.entities.PlaylistEntry;
+import app.security.entities.User;
+import app.utils.Utils;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Purpose: Fills the database with a large synthetic catalog for load testing (SEED_MODE=synthetic).
+ * Artists, albums and songs are generated in parallel, each worker writing its own slice of ids over its
+ * own connection, followed by users with playlists whose songs are picked with a Zipf distribution, so a
+ * few songs are in very many playlists and most are in few. Rows go in with PostgreSQL COPY, or with
+ * plain JDBC batches when SEED_USE_COPY=false. Ids are reserved from the entity sequences, so the
+ * application can keep inserting afterwards.
+ */
+public class SyntheticCatalogGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticCatalogGenerator.class);
+
+    // Rows per worker task, each task is one transaction
+    private static final int ROWS_PER_TASK = 10_000;
+    private static final String[] GENRES = {"Pop", "Rock", "Hip Hop", "Electronic", "Jazz", "Metal", "Indie", "R&B", "Classical", "Country"};
+    private static final String NO_FEATURED_ARTIST = "No featured artist";
+
+    public record Settings(int artists, int albumsPerArtist, int songsPerAlbum,
+                           int users, int playlistsPerUser, int minPlaylistSize, int maxPlaylistSize,
+                           double zipfExponent, int workers, int batchSize, boolean useCopy, long randomSeed) {
+
+        public static Settings fromConfig() {
+            return new Settings(
+                    Utils.getConfigInt("SEED_ARTISTS", 20_000),
+                    Utils.getConfigInt("SEED_ALBUMS_PER_ARTIST", 5),
+                    Utils.getConfigInt("SEED_SONGS_PER_ALBUM", 10),
+                    Utils.getConfigInt("SEED_USERS", 50_000),
+                    Utils.getConfigInt("SEED_PLAYLISTS_PER_USER", 3),
+                    Utils.getConfigInt("SEED_PLAYLIST_MIN_SIZE", 5),
+                    Utils.getConfigInt("SEED_PLAYLIST_MAX_SIZE", 60),
+                    Double.parseDouble(Utils.getConfigValue("SEED_ZIPF_EXPONENT", "1.0")),
+                    Utils.getConfigInt("SEED_WORKERS", Runtime.getRuntime().availableProcessors()),
+                    Utils.getConfigInt("SEED_BATCH_SIZE", 1_000),
+                    Utils.getConfigBoolean("SEED_USE_COPY", true),
+                    Utils.getConfigLong("SEED_RANDOM_SEED", 42));
+        }
+
+        int albums() {
+            return artists * albumsPerArtist;
+        }
+
+        int songs() {
+            return albums() * songsPerAlbum;
+        }
+
+        int playlists() {
+            return users * playlistsPerUser;
+        }
+    }
+
+    private final Settings settings;
+    private final Map<String, LongAdder> rowCounts = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    // First id of each generated range, reserved from the sequences in reserveIds
+    private int artistBase;
+    private int albumBase;
+    private int songBase;
+    private int playlistBase;
+    private long entryBase;
+    private String passwordHash;
+    private ZipfSampler songPopularity;
+
+    public SyntheticCatalogGenerator(Settings settings) {
+        if ((long) settings.artists() * settings.albumsPerArtist() * settings.songsPerAlbum() > Integer.MAX_VALUE
+                || settings.maxPlaylistSize() > settings.songs() || settings.minPlaylistSize() > settings.maxPlaylistSize()) {
+            throw new IllegalArgumentException("Invalid synthetic catalog settings: " + settings);
+        }
+        this.settings = settings;
+    }
+
+    public void generate(EntityManagerFactory emf) {
+        ConnectionProvider connections = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        // More workers than pooled connections would only queue inside Hikari
+        int workers = Math.max(1, Math.min(settings.workers(), HibernateConfig.getPoolMaxSize()));
+        logger.info("Generating {} artists, {} albums, {} songs, {} users and {} playlists with {} workers ({})",
+                settings.artists(), settings.albums(), settings.songs(), settings.users(), settings.playlists(),
+                workers, settings.useCopy() ? "COPY" : "JDBC batches");
+
+        long start = System.nanoTime();
+        // Every synthetic user gets the same password, BCrypt per user would dominate the run
+        passwordHash = new User("synthetic", "synthetic").getPassword();
+        songPopularity = new ZipfSampler(settings.songs(), settings.zipfExponent());
+        withConnection(connections, this::reserveIds);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            int artistsPerTask = Math.max(1, ROWS_PER_TASK / Math.max(1, settings.albumsPerArtist() * settings.songsPerAlbum()));
+            List<Runnable> catalogTasks = new ArrayList<>();
+            for (int from = 0; from < settings.artists(); from += artistsPerTask) {
+                int first = from;
+                int last = Math.min(settings.artists(), from + artistsPerTask);
+                catalogTasks.add(() -> withConnection(connections, conn -> writeCatalog(conn, first, last)));
+            }
+            runAll(executor, catalogTasks);
+
+            // Playlists reference songs, so they start once every song is committed
+            int averagePlaylistSize = (settings.minPlaylistSize() + settings.maxPlaylistSize()) / 2;
+            int usersPerTask = Math.max(1, ROWS_PER_TASK / Math.max(1, settings.playlistsPerUser() * averagePlaylistSize));
+            List<Runnable> playlistTasks = new ArrayList<>();
+            for (int from = 0; from < settings.users(); from += usersPerTask) {
+                int first = from;
+                int last = Math.min(settings.users(), from + usersPerTask);
+                playlistTasks.add(() -> withConnection(connections, conn -> writeUsers(conn, first, last)));
+            }
+            runAll(executor, playlistTasks);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report(System.nanoTime() - start);
+    }
+
+    // Takes one value from each sequence as the start of the range and moves the sequence past the range
+    private void reserveIds(Connection conn) throws SQLException {
+        artistBase = Math.toIntExact(reserve(conn, "artist_seq", settings.artists()));
+        albumBase = Math.toIntExact(reserve(conn, "album_seq", settings.albums()));
+        songBase = Math.toIntExact(reserve(conn, "song_seq", settings.songs()));
+        playlistBase = Math.toIntExact(reserve(conn, "playlist_seq", settings.playlists()));
+        // A fixed slice per playlist, so workers can number entries without coordinating
+        entryBase = reserve(conn, "playlist_entry_seq", (long) settings.playlists() * settings.maxPlaylistSize());
+        conn.commit();
+    }
+
+    private static long reserve(Connection conn, String sequence, long count) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT nextval('" + sequence + "')")) {
+            rs.next();
+            long first = rs.getLong(1);
+            // One allocation of margin, safe for the pooled and pooled-lo optimizers
+            try (PreparedStatement setval = conn.prepareStatement("SELECT setval(?, ?, false)")) {
+                setval.setString(1, sequence);
+                setval.setLong(2, first + count + IdGeneration.ALLOCATION_SIZE);
+                setval.execute();
+            }
+            return first;
+        }
+    }
+
+    private void writeCatalog(Connection conn, int firstArtist, int lastArtist) throws SQLException {
+        SplittableRandom random = new SplittableRandom(settings.randomSeed() + firstArtist);
+        RowSink artists = sink(conn, "artist", "artist_id", "artist_name", "type");
+        RowSink albums = sink(conn, "album", "album_id", "album_name", "release_date", "total_seconds", "artist_id");
+        RowSink songs = sink(conn, "song", "song_id", "song_name", "genre", "featured_artist", "duration_seconds", "main_artist_id", "album_id");
+
+        for (int artist = firstArtist; artist < lastArtist; artist++) {
+            int artistId = artistBase + artist;
+            String genre = GENRES[random.nextInt(GENRES.length)];
+            artists.add(artistId, "Artist " + artist, random.nextInt(3) == 0 ? "Band" : "Solo");
+
+            for (int a = 0; a < settings.albumsPerArtist(); a++) {
+                int album = artist * settings.albumsPerArtist() + a;
+                int totalSeconds = 0;
+                for (int t = 0; t < settings.songsPerAlbum(); t++) {
+                    int song = album * settings.songsPerAlbum() + t;
+                    int seconds = songSeconds(song);
+                    totalSeconds += seconds;
+                    String featured = random.nextInt(10) == 0 ? "Artist " + random.nextInt(settings.artists()) : NO_FEATURED_ARTIST;
+                    songs.add(songBase + song, "Song " + song, genre, featured, seconds, artistId, albumBase + album);
+                }
+                LocalDate releaseDate = LocalDate.of(1960, 1, 1).plusDays(random.nextInt(24_000));
+                albums.add(albumBase + album, "Album " + album, releaseDate, totalSeconds, artistId);
+            }
+        }
+        // Parents before children because of the foreign keys
+        artists.flush();
+        albums.flush();
+        songs.flush();
+        conn.commit();
+    }
+
+    private void writeUsers(Connection conn, int firstUser, int lastUser) throws SQLException {
+        SplittableRandom random = new SplittableRandom(settings.randomSeed() ^ (0x5DEECE66DL * (firstUser + 1)));
+        RowSink users = sink(conn, "users", "username", "password");
+        RowSink userRoles = sink(conn, "user_roles", "user_name", "role_name");
+        RowSink profiles = sink(conn, "user_profile", "username");
+        RowSink playlists = sink(conn, "playlist", "playlist_id", "playlist_name", "total_seconds", "owner_username");
+        RowSink playlistSongs = sink(conn, "playlist_songs", "entry_id", "playlist_id", "song_id", "position");
+
+        Set<Integer> picked = new HashSet<>();
+        for (int user = firstUser; user < lastUser; user++) {
+            String username = "synthetic_" + user;
+            users.add(username, passwordHash);
+            userRoles.add(username, "user");
+            profiles.add(username);
+
+            for (int p = 0; p < settings.playlistsPerUser(); p++) {
+                int playlist = user * settings.playlistsPerUser() + p;
+                int playlistId = playlistBase + playlist;
+                int size = random.nextInt(settings.minPlaylistSize(), settings.maxPlaylistSize() + 1);
+                int totalSeconds = 0;
+                picked.clear();
+                // Duplicates are allowed in a playlist, but generated playlists pick each song once
+                while (picked.size() < size) {
+                    int song = songPopularity.sample(random);
+                    if (picked.add(song)) {
+                        totalSeconds += songSeconds(song);
+                        long entry = picked.size();
+                        playlistSongs.add(entryBase + (long) playlist * settings.maxPlaylistSize() + entry - 1,
+                                playlistId, songBase + song, entry * PlaylistEntry.POSITION_GAP);
+                    }
+                }
+                playlists.add(playlistId, "Playlist " + p + " of " + username, totalSeconds, username);
+            }
+        }
+        users.flush();
+        userRoles.flush();
+        profiles.flush();
+        playlists.flush();
+        playlistSongs.flush();
+        conn.commit();
+    }
+
+    // Derived from the song number, so the playlist totals can be computed without looking the song up
+    private int songSeconds(int song) {
+        long h = (song + settings.randomSeed()) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 31;
+        return 90 + (int) Math.floorMod(h, 330L);
+    }
+
+    private RowSink sink(Connection conn, String table, String... columns) throws SQLException {
+        LongAdder counter = rowCounts.computeIfAbsent(table, t -> new LongAdder());
+        return settings.useCopy()
+                ? new CopySink(conn.unwrap(PGConnection.class).getCopyAPI(), table, columns, counter)
+                : new BatchSink(conn, table, columns, settings.batchSize(), counter);
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        long total = 0;
+        synchronized (rowCounts) {
+            for (Map.Entry<String, LongAdder> entry : rowCounts.entrySet()) {
+                long rows = entry.getValue().sum();
+                total += rows;
+                logger.info("Generated {} rows in {}", rows, entry.getKey());
+            }
+        }
+        logger.info("Generated {} rows in {} s ({} rows/s)", total, String.format("%.1f", seconds),
+                String.format("%.0f", total / seconds));
+    }
+
+    private static void runAll(ExecutorService executor, List<Runnable> tasks) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Synthetic seeding was interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("Synthetic seeding failed", e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionWork {
+        void execute(Connection conn) throws SQLException;
+    }
+
+    private static void withConnection(ConnectionProvider connections, ConnectionWork work) {
+        Connection conn = null;
+        try {
+            conn = connections.getConnection();
+            conn.setAutoCommit(false);
+            work.execute(conn);
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            throw new IllegalStateException(e);
+        } finally {
+            // Hikari rolls back anything uncommitted and resets auto-commit when the connection is returned
+            if (conn != null) {
+                try {
+                    connections.closeConnection(conn);
+                } catch (SQLException e) {
+                    logger.warn("Could not return connection to the pool", e);
+                }
+            }
+        }
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                logger.warn("Rollback failed", e);
+            }
+        }
+    }
+
+    // Buffers rows for one table and writes them on flush
+    private interface RowSink {
+        void add(Object... values);
+
+        void flush() throws SQLException;
+    }
+
+    // COPY ... FROM STDIN in PostgreSQL's text format
+    private static class CopySink implements RowSink {
+        private final CopyManager copyManager;
+        private final String sql;
+        private final LongAdder counter;
+        private final StringBuilder buffer = new StringBuilder();
+        private int rows;
+
+        CopySink(CopyManager copyManager, String table, String[] columns, LongAdder counter) {
+            this.copyManager = copyManager;
+            this.sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN";
+            this.counter = counter;
+        }
+
+        @Override
+        public void add(Object... values) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append('\t');
+                }
+                appendValue(values[i]);
+            }
+            buffer.append('\n');
+            rows++;
+        }
+
+        private void appendValue(Object value) {
+            if (value == null) {
+                buffer.append("\\N");
+                return;
+            }
+            String text = value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\' -> buffer.append("\\\\");
+                    case '\t' -> buffer.append("\\t");
+                    case '\n' -> buffer.append("\\n");
+                    case '\r' -> buffer.append("\\r");
+                    default -> buffer.append(c);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws SQLException {
+            if (rows == 0) {
+                return;
+            }
+            try {
+                copyManager.copyIn(sql, new StringReader(buffer.toString()));
+            } catch (IOException e) {
+                throw new SQLException("COPY failed: " + sql, e);
+            }
+            counter.add(rows);
+            buffer.setLength(0);
+            rows = 0;
+        }
+    }
+
+    // Multi-row fallback: one prepared INSERT executed as JDBC batches of batchSize
+    private static class BatchSink implements RowSink {
+        private final Connection conn;
+        private final String sql;
+        private final int batchSize;
+        private final LongAdder counter;
+        private final List<Object[]> rows = new ArrayList<>();
+
+        BatchSink(Connection conn, String table, String[] columns, int batchSize, LongAdder counter) {
+            this.conn = conn;
+            this.sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+            this.batchSize = Math.max(1, batchSize);
+            this.counter = counter;
+        }
+
+        @Override
+        public void add(Object... values) {
+            rows.add(values);
+        }
+
+        @Override
+        public void flush() throws SQLException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement statement = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        statement.setObject(i + 1, row[i]);
+                    }
+                    statement.addBatch();
+                    if (++pending == batchSize) {
+                        statement.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    statement.executeBatch();
+                }
+            }
+            counter.add(rows.size());
+            rows.clear();
+        }
+    }
+
+    /**
+     * Samples song numbers 0..n-1 where rank k is picked with probability proportional to 1/(k+1)^exponent.
+     * Ranks are spread over the catalog with a fixed stride, so the popular songs are not all on the first albums.
+     */
+    static class ZipfSampler {
+        private final double[] cumulative;
+        private final int n;
+        private final long stride;
+
+        ZipfSampler(int n, double exponent) {
+            this.n = n;
+            this.cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1.0 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+            this.stride = coprimeStride(n);
+        }
+
+        int sample(SplittableRandom random) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            if (rank < 0) {
+                rank = -rank - 1;
+            }
+            rank = Math.min(rank, n - 1);
+            return (int) ((rank * stride) % n);
+        }
+
+        // Any stride coprime with n makes rank -> song a permutation
+        private static long coprimeStride(int n) {
+            long stride = 7_919;
+            while (gcd(stride, n) != 1) {
+                stride++;
+            }
+            return stride % Math.max(1, n);
+        }
+
+        private static long gcd(long a, long b) {
+            return b == 0 ? a : gcd(b, a % b);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package app.controllers.impl;
 
+import app.cache.ResourceVersions;
 import app.config.HibernateConfig;
 import app.controllers.IController;
 import app.daos.impl.ArtistDAO;
 import app.daos.impl.AlbumDAO; // if you expose albums via a DAO; optional if ArtistDAO can return AlbumDTOs
 import app.dtos.ArtistDTO;
 import app.dtos.AlbumDTO;
+import app.security.exceptions.ApiException;
+import app.utils.JsonResponses;
 import io.javalin.http.Context;
 import jakarta.persistence.EntityManagerFactory;
 
@@ -15,6 +18,7 @@ public class ArtistController implements IController<ArtistDTO, Integer> {
 
     private final ArtistDAO artistDao;
     private final AlbumDAO albumDao;
+    private final ResourceVersions versions = ResourceVersions.getInstance();
 
     public ArtistController() {
         EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
@@ -24,17 +28,31 @@ public class ArtistController implements IController<ArtistDTO, Integer> {
 
     @Override
     public void read(Context ctx) {
+        // A client holding the cached version gets a 304 before the key check queries
+        if (ResourceVersions.notModified(ctx, artistDao.cachedETag(ctx.pathParamAsClass("id", Integer.class).get()))) {
+            return;
+        }
         int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid key").get();
         ArtistDTO dto = artistDao.read(id);
+        // Deleted since the key check
+        if (dto == null) {
+            throw new ApiException(404, "Artist not found: " + id);
+        }
+        if (ResourceVersions.notModified(ctx, dto.getEtag())) {
+            return;
+        }
         ctx.res().setStatus(200);
         ctx.json(dto, ArtistDTO.class);
     }
 
     @Override
     public void readAll(Context ctx) {
+        if (ResourceVersions.notModified(ctx, versions.weak(ResourceVersions.Collection.ARTISTS))) {
+            return;
+        }
         List<ArtistDTO> list = artistDao.readAll();
         ctx.res().setStatus(200);
-        ctx.json(list, ArtistDTO.class);
+        JsonResponses.array(ctx, list, ArtistDTO.class);
     }
 
     public void createAlbumForArtist(Context ctx) {
@@ -54,10 +72,13 @@ public class ArtistController implements IController<ArtistDTO, Integer> {
 
 
     public void readAlbumsByArtist(Context ctx) {
+        if (ResourceVersions.notModified(ctx, versions.weak(ResourceVersions.Collection.ALBUMS))) {
+            return;
+        }
         int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid key").get();
         List<AlbumDTO> albums = artistDao.readAlbumsByArtistId(id);
         ctx.res().setStatus(200);
-        ctx.json(albums, AlbumDTO.class);
+        JsonResponses.array(ctx, albums, AlbumDTO.class);
     }
 
     @Override
@@ -0,0 +1,111 @@
+package app.controllers.impl;
+
+import app.cache.CatalogCache;
+import app.config.HibernateConfig;
+import app.metrics.PoolMetrics;
+import app.metrics.PrometheusFormat;
+import app.metrics.RequestMetrics;
+import app.search.TypeaheadIndex;
+import app.cache.LruCache;
+import app.security.controllers.SecurityController;
+import app.utils.Utils;
+import io.javalin.http.Context;
+import io.javalin.http.NotFoundResponse;
+import io.javalin.http.UnauthorizedResponse;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class MetricsController {
+
+    public record RegionStats(String region, long hits, long misses, long puts, long elementsInMemory) {
+    }
+
+    public record SecondLevelCacheStats(boolean enabled,
+                                        long hits, long misses, long puts,
+                                        long queryCacheHits, long queryCacheMisses, long queryCachePuts,
+                                        List<RegionStats> regions) {
+    }
+
+    // A scraper cannot log in, it sends this shared secret instead. Unset, the scrape is off
+    private static final byte[] scrapeToken = Optional.ofNullable(Utils.getConfigValue("METRICS_SCRAPE_TOKEN", null))
+            .map(token -> token.getBytes(StandardCharsets.UTF_8))
+            .orElse(null);
+
+    private final CatalogCache catalogCache = CatalogCache.getInstance();
+
+    // Hit/miss/eviction counters per cache, used to size CATALOG_CACHE_SIZE and TOKEN_CACHE_SIZE
+    public void cache(Context ctx) {
+        List<LruCache.Stats> stats = new ArrayList<>(catalogCache.stats());
+        stats.add(SecurityController.getInstance().tokenCacheStats());
+        ctx.res().setStatus(200);
+        ctx.json(stats);
+    }
+
+    // Hibernate second-level and query cache statistics, per region from ehcache.xml
+    public void secondLevelCache(Context ctx) {
+        Statistics statistics = HibernateConfig.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        List<RegionStats> regions = new ArrayList<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics != null) {
+                regions.add(new RegionStats(region,
+                        regionStatistics.getHitCount(),
+                        regionStatistics.getMissCount(),
+                        regionStatistics.getPutCount(),
+                        regionStatistics.getElementCountInMemory()));
+            }
+        }
+        ctx.res().setStatus(200);
+        ctx.json(new SecondLevelCacheStats(HibernateConfig.isSecondLevelCacheEnabled(),
+                statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(),
+                statistics.getSecondLevelCachePutCount(),
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount(),
+                regions));
+    }
+
+    // Active/idle/pending connections and the time requests wait to acquire one
+    public void pool(Context ctx) {
+        ctx.res().setStatus(200);
+        ctx.json(PoolMetrics.snapshot());
+    }
+
+    // Login/register hashing executor: queue depth, rejections (503s) and latency
+    public void hashing(Context ctx) {
+        ctx.res().setStatus(200);
+        ctx.json(SecurityController.getInstance().hashingStats());
+    }
+
+    // Request latency per route, in-flight requests, status classes, DAO latency and the pool, for Prometheus.
+    // Needs "Authorization: Bearer <METRICS_SCRAPE_TOKEN>", so route names and traffic are not public
+    public void prometheus(Context ctx) {
+        if (scrapeToken == null) {
+            throw new NotFoundResponse("Set METRICS_SCRAPE_TOKEN to enable the Prometheus scrape");
+        }
+        String header = ctx.header("Authorization");
+        byte[] presented = header != null && header.startsWith("Bearer ")
+                ? header.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        // Constant time, the token must not be guessable byte by byte from response times
+        if (!MessageDigest.isEqual(presented, scrapeToken)) {
+            throw new UnauthorizedResponse("Scrape token missing or wrong");
+        }
+        ctx.res().setStatus(200);
+        ctx.contentType(PrometheusFormat.CONTENT_TYPE);
+        ctx.result(PrometheusFormat.render(RequestMetrics.getInstance(), PoolMetrics.snapshot()));
+    }
+
+    // Typeahead index size, estimated heap per million titles and lookup latency
+    public void typeahead(Context ctx) {
+        ctx.res().setStatus(200);
+        ctx.json(TypeaheadIndex.getInstance().stats());
+    }
+}
@@ -1,17 +1,32 @@
 package app.controllers.impl;
 
+import app.cache.ResourceVersions;
 import app.config.HibernateConfig;
 import app.controllers.IController;
 import app.daos.impl.PlaylistDAO;
 import app.dtos.PlaylistDTO;
+import app.dtos.PlaylistEntryDTO;
+import app.dtos.PlaylistMoveDTO;
+import app.dtos.PlaylistSongsDTO;
+import app.security.exceptions.ApiException;
+import app.utils.JsonResponses;
 import io.javalin.http.Context;
 import jakarta.persistence.EntityManagerFactory;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 public class PlaylistController implements IController<PlaylistDTO, Integer> {
 
+    private static final int MAX_SONGS_PER_CHANGE = 1000;
+    private static final int DEFAULT_ENTRY_LIMIT = 100;
+    private static final int MAX_ENTRY_LIMIT = 1000;
+    private static final int DEFAULT_OWNER_PAGE_SIZE = 100;
+    private static final int MAX_OWNER_PAGE_SIZE = 1000;
+
     private final PlaylistDAO dao;
+    private final ResourceVersions versions = ResourceVersions.getInstance();
 
     public PlaylistController() {
         EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
@@ -20,24 +35,54 @@ public class PlaylistController implements IController<PlaylistDTO, Integer> {
 
     @Override
     public void read(Context ctx) {
+        // A client holding the version last served gets a 304 before the key check queries
+        if (ResourceVersions.notModified(ctx, versions.playlistETag(ctx.pathParamAsClass("id", Integer.class).get()))) {
+            return;
+        }
         int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid key").get();
+        long generation = versions.generation(ResourceVersions.Collection.PLAYLISTS);
         PlaylistDTO dto = dao.read(id);
+        // Deleted since the key check, nothing to remember
+        if (dto == null) {
+            throw new ApiException(404, "Playlist not found: " + id);
+        }
+        versions.rememberPlaylist(id, dto.getEtag(), generation);
+        if (ResourceVersions.notModified(ctx, dto.getEtag())) {
+            return;
+        }
         ctx.res().setStatus(200);
         ctx.json(dto, PlaylistDTO.class);
     }
 
     @Override
     public void readAll(Context ctx) {
+        if (ResourceVersions.notModified(ctx, versions.weak(ResourceVersions.Collection.PLAYLISTS))) {
+            return;
+        }
         List<PlaylistDTO> list = dao.readAll();
         ctx.res().setStatus(200);
-        ctx.json(list, PlaylistDTO.class);
+        JsonResponses.array(ctx, list, PlaylistDTO.class);
     }
 
     public void readPlaylistsByOwner(Context ctx) {
+        if (ResourceVersions.notModified(ctx, versions.weak(ResourceVersions.Collection.PLAYLISTS))) {
+            return;
+        }
         String username = ctx.pathParam("username");
-        List<PlaylistDTO> playlists = dao.readPlaylistsByOwner(username);
+        int limit = ctx.queryParamAsClass("limit", Integer.class)
+                .check(l -> l > 0 && l <= MAX_OWNER_PAGE_SIZE, "limit must be between 1 and " + MAX_OWNER_PAGE_SIZE)
+                .getOrDefault(DEFAULT_OWNER_PAGE_SIZE);
+        int after = ctx.queryParamAsClass("after", Integer.class)
+                .check(a -> a >= 0, "after must be a playlist id")
+                .getOrDefault(0);
+        List<PlaylistDTO> playlists = dao.readPlaylistsByOwner(username, after, limit);
+        // The body stays a plain array, a full page links to the next one (RFC 8288)
+        if (playlists.size() == limit) {
+            int next = playlists.get(playlists.size() - 1).getId();
+            ctx.header("Link", "<" + ctx.path() + "?after=" + next + "&limit=" + limit + ">; rel=\"next\"");
+        }
         ctx.res().setStatus(200);
-        ctx.json(playlists);
+        JsonResponses.array(ctx, playlists, PlaylistDTO.class);
     }
 
     @Override
@@ -56,6 +101,87 @@ public class PlaylistController implements IController<PlaylistDTO, Integer> {
         ctx.json(updated, PlaylistDTO.class);
     }
 
+    // POST /playlists/{id}/songs {"songIds": [..]}, appended to the end in the given order
+    public void addSongs(Context ctx) {
+        int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid id").get();
+        PlaylistSongsDTO changed = dao.addSongs(id, validateSongIds(ctx));
+        respondWithChange(ctx, id, changed);
+    }
+
+    // GET /playlists/{id}/songs?offset=&limit=, or ?after=<position> to continue from the previous window
+    public void readSongs(Context ctx) {
+        // The entries show song and artist names too
+        if (ResourceVersions.notModified(ctx, versions.weak(ResourceVersions.Collection.PLAYLISTS,
+                ResourceVersions.Collection.SONGS, ResourceVersions.Collection.ARTISTS))) {
+            return;
+        }
+        int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid id").get();
+        int offset = ctx.queryParamAsClass("offset", Integer.class).getOrDefault(0);
+        int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(DEFAULT_ENTRY_LIMIT);
+        Long after = ctx.queryParamAsClass("after", Long.class).allowNullable().get();
+        if (offset < 0 || limit < 1 || limit > MAX_ENTRY_LIMIT) {
+            throw new ApiException(400, "offset must be >= 0 and limit between 1 and " + MAX_ENTRY_LIMIT);
+        }
+        List<PlaylistEntryDTO> entries = dao.readEntries(id, offset, limit, after);
+        ctx.res().setStatus(200);
+        JsonResponses.array(ctx, entries, PlaylistEntryDTO.class);
+    }
+
+    // PUT /playlists/{id}/songs/{entryId}/position {"afterEntryId": ..}, null moves the entry to the top
+    public void moveSong(Context ctx) {
+        int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid id").get();
+        long entryId = ctx.pathParamAsClass("entryId", Long.class).get();
+        PlaylistMoveDTO move = ctx.bodyAsClass(PlaylistMoveDTO.class);
+        if (!dao.moveEntry(id, entryId, move.getAfterEntryId())) {
+            throw new ApiException(404, "Entry not found in playlist " + id);
+        }
+        ctx.res().setStatus(204);
+    }
+
+    // DELETE /playlists/{id}/songs/{songId}, every entry of the song
+    public void removeSong(Context ctx) {
+        int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid id").get();
+        int songId = ctx.pathParamAsClass("songId", Integer.class).get();
+        PlaylistSongsDTO changed = dao.removeSongs(id, Set.of(songId));
+        respondWithChange(ctx, id, changed);
+    }
+
+    // DELETE /playlists/{id}/entries/{entryId}, one occurrence of a song that is in the playlist more than once
+    public void removeEntry(Context ctx) {
+        int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid id").get();
+        long entryId = ctx.pathParamAsClass("entryId", Long.class).get();
+        PlaylistSongsDTO changed = dao.removeEntry(id, entryId);
+        if (changed != null && changed.getSongIds().isEmpty()) {
+            throw new ApiException(404, "Entry not found in playlist " + id);
+        }
+        respondWithChange(ctx, id, changed);
+    }
+
+    // DELETE /playlists/{id}/songs {"songIds": [..]}
+    public void removeSongs(Context ctx) {
+        int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid id").get();
+        PlaylistSongsDTO changed = dao.removeSongs(id, validateSongIds(ctx));
+        respondWithChange(ctx, id, changed);
+    }
+
+    private void respondWithChange(Context ctx, int id, PlaylistSongsDTO changed) {
+        // The playlist can be deleted between the key check and the change
+        if (changed == null) {
+            throw new ApiException(404, "Playlist not found: " + id);
+        }
+        ctx.res().setStatus(200);
+        ctx.json(changed, PlaylistSongsDTO.class);
+    }
+
+    private List<Integer> validateSongIds(Context ctx) {
+        PlaylistSongsDTO request = ctx.bodyValidator(PlaylistSongsDTO.class)
+                .check(r -> r.getSongIds() != null && !r.getSongIds().isEmpty(), "songIds must be set")
+                .check(r -> r.getSongIds().size() <= MAX_SONGS_PER_CHANGE, "At most " + MAX_SONGS_PER_CHANGE + " songIds per request")
+                .check(r -> r.getSongIds().stream().allMatch(Objects::nonNull), "songIds must not contain null")
+                .get();
+        return request.getSongIds();
+    }
+
     @Override
     public void delete(Context ctx) {
         int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid id").get();
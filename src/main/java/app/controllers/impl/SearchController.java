@@ -0,0 +1,70 @@
+package app.controllers.impl;
+
+import app.config.HibernateConfig;
+import app.daos.impl.SearchDAO;
+import app.dtos.SearchHitDTO;
+import app.dtos.SearchResultDTO;
+import app.search.TypeaheadIndex;
+import io.javalin.http.Context;
+import jakarta.persistence.EntityManagerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class SearchController {
+
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+    private static final int MAX_QUERY_LENGTH = 100;
+    private static final int MAX_TYPEAHEAD_LIMIT = 20;
+
+    private final EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
+    private final SearchDAO dao = SearchDAO.getInstance(emf);
+    private final TypeaheadIndex typeahead = TypeaheadIndex.getInstance();
+
+    // GET /search?q=daft pu&offset=0&limit=10
+    public void search(Context ctx) {
+        String q = validateQuery(ctx);
+        int limit = ctx.queryParamAsClass("limit", Integer.class)
+                .check(l -> l > 0 && l <= MAX_LIMIT, "limit must be between 1 and " + MAX_LIMIT)
+                .getOrDefault(DEFAULT_LIMIT);
+        int offset = ctx.queryParamAsClass("offset", Integer.class)
+                .check(o -> o >= 0 && o < SearchDAO.MAX_CANDIDATES, "offset must be between 0 and " + (SearchDAO.MAX_CANDIDATES - 1))
+                .getOrDefault(0);
+
+        SearchResultDTO result = dao.search(q, offset, limit);
+        ctx.res().setStatus(200);
+        ctx.json(result, SearchResultDTO.class);
+    }
+
+    // GET /search/typeahead?q=daft pu&limit=10, names only, served from TypeaheadIndex without a query
+    public void typeahead(Context ctx) {
+        String q = validateQuery(ctx);
+        int limit = ctx.queryParamAsClass("limit", Integer.class)
+                .check(l -> l > 0 && l <= MAX_TYPEAHEAD_LIMIT, "limit must be between 1 and " + MAX_TYPEAHEAD_LIMIT)
+                .getOrDefault(DEFAULT_LIMIT);
+
+        typeahead.ensureBuilt(emf);
+        SearchResultDTO result = new SearchResultDTO(q, 0, limit,
+                hits(TypeaheadIndex.Kind.SONG, q, limit),
+                hits(TypeaheadIndex.Kind.ARTIST, q, limit),
+                hits(TypeaheadIndex.Kind.ALBUM, q, limit));
+        ctx.res().setStatus(200);
+        ctx.json(result, SearchResultDTO.class);
+    }
+
+    private List<SearchHitDTO> hits(TypeaheadIndex.Kind kind, String q, int limit) {
+        return Arrays.stream(typeahead.lookup(kind, q, limit))
+                .mapToObj(id -> new SearchHitDTO(id, typeahead.name(kind, id), null, null))
+                // A delete between the lookup and here leaves no name
+                .filter(hit -> hit.getName() != null)
+                .toList();
+    }
+
+    private static String validateQuery(Context ctx) {
+        return ctx.queryParamAsClass("q", String.class)
+                .check(s -> !s.isBlank(), "q must be set")
+                .check(s -> s.length() <= MAX_QUERY_LENGTH, "q must be at most " + MAX_QUERY_LENGTH + " characters")
+                .get();
+    }
+}
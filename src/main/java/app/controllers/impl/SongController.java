@@ -1,17 +1,40 @@
 package app.controllers.impl;
 
+import app.cache.ResourceVersions;
 import app.config.HibernateConfig;
 import app.controllers.IController;
 import app.daos.impl.SongDAO;
+import app.daos.impl.SongImporter;
 import app.dtos.SongDTO;
+import app.dtos.SongImportResultDTO;
+import app.dtos.SongPageDTO;
+import app.security.exceptions.ApiException;
+import app.utils.Durations;
+import app.utils.JsonResponses;
+import app.utils.Utils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
 import jakarta.persistence.EntityManagerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 public class SongController implements IController<SongDTO, Integer> {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_IMPORT_CHUNK_SIZE = 10_000;
+    private static final int DEFAULT_IMPORT_CHUNK_SIZE = Utils.getConfigInt("BULK_IMPORT_CHUNK_SIZE", 500);
+
     private final SongDAO dao;
+    private final ResourceVersions versions = ResourceVersions.getInstance();
+    private final ObjectMapper jsonMapper = new Utils().getObjectMapper();
 
     public SongController() {
         EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
@@ -20,10 +43,21 @@ public class SongController implements IController<SongDTO, Integer> {
 
     @Override
     public void read(Context ctx) {
+        // A client holding the cached version gets a 304 before the key check queries
+        if (ResourceVersions.notModified(ctx, dao.cachedETag(ctx.pathParamAsClass("id", Integer.class).get()))) {
+            return;
+        }
         // What we are requesting
         int id = ctx.pathParamAsClass("id", Integer.class).check(this::validatePrimaryKey, "Not a valid key").get();
         // The DTO
         SongDTO songDTO = dao.read(id);
+        // Deleted since the key check
+        if (songDTO == null) {
+            throw new ApiException(404, "Song not found: " + id);
+        }
+        if (ResourceVersions.notModified(ctx, songDTO.getEtag())) {
+            return;
+        }
         // Response
         ctx.res().setStatus(200);
         ctx.json(songDTO, SongDTO.class);
@@ -31,11 +65,46 @@ public class SongController implements IController<SongDTO, Integer> {
 
     @Override
     public void readAll(Context ctx) {
+        if (ResourceVersions.notModified(ctx, versions.weak(ResourceVersions.Collection.SONGS))) {
+            return;
+        }
+        // ?stream=true writes the whole catalog row by row instead of paging
+        if (ctx.queryParamAsClass("stream", Boolean.class).getOrDefault(false)) {
+            streamAll(ctx);
+            return;
+        }
+        // Request
+        int limit = ctx.queryParamAsClass("limit", Integer.class)
+                .check(l -> l > 0 && l <= MAX_PAGE_SIZE, "limit must be between 1 and " + MAX_PAGE_SIZE)
+                .getOrDefault(DEFAULT_PAGE_SIZE);
+        int after = ctx.queryParamAsClass("after", Integer.class)
+                .check(a -> a >= 0, "after must be a song id")
+                .getOrDefault(0);
         // List of DTOS
-        List<SongDTO> songDTOS = dao.readAll();
+        List<SongDTO> songDTOS = dao.readPage(after, limit);
+        // A full page means there might be more, so hand out the last id as the cursor
+        Integer next = songDTOS.size() == limit ? songDTOS.get(songDTOS.size() - 1).getSongId() : null;
         // Response
         ctx.res().setStatus(200);
-        ctx.json(songDTOS, SongDTO.class);
+        JsonResponses.object(ctx, new SongPageDTO(songDTOS, next), SongPageDTO.class);
+    }
+
+    private void streamAll(Context ctx) {
+        ctx.status(200);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        try (JsonGenerator generator = jsonMapper.getFactory().createGenerator(ctx.outputStream())) {
+            generator.writeStartArray();
+            dao.streamAll(song -> {
+                try {
+                    generator.writeObject(song);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
@@ -49,6 +118,67 @@ public class SongController implements IController<SongDTO, Integer> {
         ctx.json(songDTO, SongDTO.class);
     }
 
+    // Accepts a JSON array or NDJSON (one song per line). Rows are read one at a time from the body
+    // and imported in chunks, rows that fail are reported instead of aborting the import
+    public void importBulk(Context ctx) {
+        // Request
+        int chunkSize = ctx.queryParamAsClass("chunkSize", Integer.class)
+                .check(c -> c > 0 && c <= MAX_IMPORT_CHUNK_SIZE, "chunkSize must be between 1 and " + MAX_IMPORT_CHUNK_SIZE)
+                .getOrDefault(DEFAULT_IMPORT_CHUNK_SIZE);
+        SongImporter importer = dao.importer(chunkSize);
+        int row = 0;
+        try (MappingIterator<SongDTO> rows = jsonMapper.readerFor(SongDTO.class).readValues(ctx.bodyInputStream())) {
+            while (true) {
+                row++;
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                    SongDTO song = rows.nextValue();
+                    String error = validationError(song);
+                    if (error != null) {
+                        importer.reject(row, error);
+                    } else {
+                        importer.add(row, song);
+                    }
+                } catch (JsonMappingException e) {
+                    // Well-formed JSON with wrong types, the iterator skips to the next row
+                    importer.reject(row, e.getOriginalMessage());
+                } catch (JsonProcessingException e) {
+                    // Broken JSON, there is no reliable next row to continue from
+                    importer.reject(row, "Malformed JSON, import stopped: " + e.getOriginalMessage());
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Chunks before a malformed row stay imported
+        SongImportResultDTO result = importer.finish();
+        // Response
+        ctx.res().setStatus(200);
+        ctx.json(result, SongImportResultDTO.class);
+    }
+
+    // Same rules as validateEntity, for a single row of a bulk import
+    private static String validationError(SongDTO s) {
+        if (s.getSongName() == null || s.getSongName().isEmpty()) return "Song name must be set";
+        if (s.getAlbumName() == null || s.getAlbumName().isEmpty()) return "Album name must be set";
+        if (s.getMainArtistName() == null || s.getMainArtistName().isEmpty()) return "Main artist name must be set";
+        if (s.getGenre() == null) return "Genre type must be set";
+        if (!isValidDuration(s.getDuration())) return "Duration must be set as m:ss";
+        return null;
+    }
+
+    private static boolean isValidDuration(String duration) {
+        try {
+            Durations.parse(duration);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     @Override
     public void update(Context ctx) {
         // Request
@@ -81,7 +211,7 @@ public class SongController implements IController<SongDTO, Integer> {
                 .check(s -> s.getAlbumName() != null && !s.getAlbumName().isEmpty(), "Album name must be set")
                 .check(s -> s.getMainArtistName() != null && !s.getMainArtistName().isEmpty(), "Main artist name must be set")
                 .check(s -> s.getGenre() != null, "Genre type must be set")
-                .check(s -> s.getDuration() != null && !s.getDuration().isEmpty(), "Duration must be set")
+                .check(s -> isValidDuration(s.getDuration()), "Duration must be set as m:ss")
                 .get();
     }
 }
@@ -1,19 +1,33 @@
 package app.daos.impl;
 
+import app.cache.CatalogCache;
 import app.daos.IDAO;
 import app.dtos.AlbumDTO;
 import app.entities.Album;
 import app.entities.Artist;
+import app.entities.Song;
+import app.search.TypeaheadIndex;
+import app.metrics.DaoMetrics;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.TypedQuery;
 
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class AlbumDAO implements IDAO<AlbumDTO, Integer> {
 
     private static AlbumDAO instance;
     private static EntityManagerFactory emf;
+    private static final DaoMetrics.Timers timers = DaoMetrics.forDao("AlbumDAO");
+    private static final CatalogCache cache = CatalogCache.getInstance();
+    private static final TypeaheadIndex typeahead = TypeaheadIndex.getInstance();
+
+    // Selects exactly the columns AlbumDTO needs in one join, also used by ArtistDAO.readAlbumsByArtistId
+    static final String ALBUM_PROJECTION =
+            "SELECT new app.dtos.AlbumDTO(al.id, al.albumName, al.releaseDate, al.totalSeconds, ar.id, ar.artistName) " +
+                    "FROM Album al JOIN al.artist ar ";
 
     public static AlbumDAO getInstance(EntityManagerFactory _emf) {
         if (instance == null) {
@@ -25,25 +39,37 @@ public class AlbumDAO implements IDAO<AlbumDTO, Integer> {
 
     @Override
     public AlbumDTO read(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return cache.albums().getOrLoad(id, this::load);
+        } finally {
+            timers.read().recordSince(start);
+        }
+    }
+
+    private AlbumDTO load(Integer id) {
         try (EntityManager em = emf.createEntityManager()) {
-            Album album = em.find(Album.class, id);
-            return album == null ? null : new AlbumDTO(album);
+            return em.createQuery(ALBUM_PROJECTION + "WHERE al.id = :id", AlbumDTO.class)
+                    .setParameter("id", id)
+                    .getResultStream().findFirst()
+                    .orElse(null);
         }
     }
 
     @Override
     public List<AlbumDTO> readAll() {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            TypedQuery<AlbumDTO> query = em.createQuery(
-                    "SELECT new app.dtos.AlbumDTO(a) FROM Album a",
-                    AlbumDTO.class
-            );
+            TypedQuery<AlbumDTO> query = em.createQuery(ALBUM_PROJECTION, AlbumDTO.class);
             return query.getResultList();
+        } finally {
+            timers.readAll().recordSince(start);
         }
     }
 
     @Override
     public AlbumDTO create(AlbumDTO albumDTO) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
 
@@ -56,12 +82,17 @@ public class AlbumDAO implements IDAO<AlbumDTO, Integer> {
 
             em.persist(album);
             em.getTransaction().commit();
+            cache.albumAdded();
+            typeahead.put(TypeaheadIndex.Kind.ALBUM, album.getId(), album.getAlbumName());
             return new AlbumDTO(album);
+        } finally {
+            timers.create().recordSince(start);
         }
     }
 
     @Override
     public AlbumDTO update(Integer id, AlbumDTO albumDTO) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
 
@@ -73,7 +104,6 @@ public class AlbumDAO implements IDAO<AlbumDTO, Integer> {
 
             album.setAlbumName(albumDTO.getAlbumName());
             album.setReleaseDate(albumDTO.getReleaseDate());
-            album.setTotalDuration(albumDTO.getTotalDuration());
 
             if (albumDTO.getArtistId() != null) {
                 Artist artistRef = em.getReference(Artist.class, albumDTO.getArtistId());
@@ -81,27 +111,45 @@ public class AlbumDAO implements IDAO<AlbumDTO, Integer> {
             }
 
             em.getTransaction().commit();
+            // A rename changes SongDTO.albumName too
+            cache.albumChanged(id);
+            typeahead.put(TypeaheadIndex.Kind.ALBUM, id, album.getAlbumName());
             return new AlbumDTO(album);
+        } finally {
+            timers.update().recordSince(start);
         }
     }
 
     @Override
     public void delete(Integer id) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Album album = em.find(Album.class, id);
+            Set<Integer> songIds = Set.of();
             if (album != null) {
+                songIds = album.getSongs().stream().map(Song::getSongId).collect(Collectors.toSet());
                 em.remove(album);
             }
             em.getTransaction().commit();
+            cache.albumChanged(id);
+            // The songs went with the album (cascade)
+            typeahead.remove(TypeaheadIndex.Kind.ALBUM, List.of(id));
+            typeahead.remove(TypeaheadIndex.Kind.SONG, songIds);
+        } finally {
+            timers.delete().recordSince(start);
         }
     }
 
     @Override
     public boolean validatePrimaryKey(Integer id) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            Album album = em.find(Album.class, id);
-            return album != null;
+            return em.createQuery("SELECT count(al) FROM Album al WHERE al.id = :id", Long.class)
+                    .setParameter("id", id)
+                    .getSingleResult() > 0;
+        } finally {
+            timers.validatePrimaryKey().recordSince(start);
         }
     }
 }
@@ -1,5 +1,6 @@
 package app.daos.impl;
 
+import app.cache.CatalogCache;
 import app.daos.IDAO;
 import app.dtos.AlbumDTO;
 import app.dtos.ArtistDTO;
@@ -8,6 +9,8 @@ import app.entities.Album;
 import app.entities.Song;
 import app.entities.UserProfile;
 import app.entities.Playlist;
+import app.search.TypeaheadIndex;
+import app.metrics.DaoMetrics;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.TypedQuery;
@@ -15,11 +18,19 @@ import lombok.NoArgsConstructor;
 
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class ArtistDAO implements IDAO<ArtistDTO, Integer> {
 
     private static ArtistDAO instance;
     private static EntityManagerFactory emf;
+    private static final DaoMetrics.Timers timers = DaoMetrics.forDao("ArtistDAO");
+    private static final CatalogCache cache = CatalogCache.getInstance();
+    private static final TypeaheadIndex typeahead = TypeaheadIndex.getInstance();
+
+    // Artist has EAGER songSet and albumSet, so reads select only the columns the DTOs need
+    private static final String ARTIST_PROJECTION =
+            "SELECT new app.dtos.ArtistDTO(a.id, a.artistName, a.type, a.version) FROM Artist a ";
 
     public static ArtistDAO getInstance(EntityManagerFactory _emf) {
         if (instance == null) {
@@ -31,16 +42,33 @@ public class ArtistDAO implements IDAO<ArtistDTO, Integer> {
 
     @Override
     public ArtistDTO read(Integer integer) {
+        long start = System.nanoTime();
+        try {
+            return cache.artists().getOrLoad(integer, this::load);
+        } finally {
+            timers.read().recordSince(start);
+        }
+    }
+
+    // ETag of the cached DTO, null when it is not cached. Never queries
+    public String cachedETag(int id) {
+        ArtistDTO cached = cache.artists().peek(id);
+        return cached == null ? null : cached.getEtag();
+    }
+
+    private ArtistDTO load(Integer integer) {
         try (EntityManager em = emf.createEntityManager()) {
-            Artist artist = em.find(Artist.class, integer);
-            return new ArtistDTO(artist);
+            return em.createQuery(ARTIST_PROJECTION + "WHERE a.id = :id", ArtistDTO.class)
+                    .setParameter("id", integer)
+                    .getResultStream().findFirst()
+                    .orElse(null);
         }
     }
 
     public List<AlbumDTO> readAlbumsByArtistId(Integer artistId) {
         try (EntityManager em = emf.createEntityManager()) {
             TypedQuery<AlbumDTO> query = em.createQuery(
-                    "SELECT new app.dtos.AlbumDTO(a) FROM Album a WHERE a.artist.id = :artistId",
+                    AlbumDAO.ALBUM_PROJECTION + "WHERE ar.id = :artistId",
                     AlbumDTO.class
             );
             query.setParameter("artistId", artistId);
@@ -50,25 +78,34 @@ public class ArtistDAO implements IDAO<ArtistDTO, Integer> {
 
     @Override
     public List<ArtistDTO> readAll() {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            TypedQuery<ArtistDTO> query = em.createQuery("SELECT new app.dtos.ArtistDTO(a) FROM Artist a", ArtistDTO.class);
+            TypedQuery<ArtistDTO> query = em.createQuery(ARTIST_PROJECTION, ArtistDTO.class);
             return query.getResultList();
+        } finally {
+            timers.readAll().recordSince(start);
         }
     }
 
     @Override
     public ArtistDTO create(ArtistDTO artistDTO) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Artist artist = artistDTO.toEntity();
             em.persist(artist);
             em.getTransaction().commit();
+            cache.artistAdded();
+            typeahead.put(TypeaheadIndex.Kind.ARTIST, artist.getId(), artist.getArtistName());
             return new ArtistDTO(artist);
+        } finally {
+            timers.create().recordSince(start);
         }
     }
 
     @Override
     public ArtistDTO update(Integer integer, ArtistDTO artistDTO) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Artist artist = em.find(Artist.class, integer);
@@ -76,27 +113,48 @@ public class ArtistDAO implements IDAO<ArtistDTO, Integer> {
             artist.setType(artistDTO.getType());
             Artist mergedArtist = em.merge(artist);
             em.getTransaction().commit();
+            // A rename changes AlbumDTO.artistName and SongDTO.mainArtistName too
+            cache.artistChanged(integer);
+            typeahead.put(TypeaheadIndex.Kind.ARTIST, integer, mergedArtist.getArtistName());
             return mergedArtist != null ? new ArtistDTO(mergedArtist) : null;
+        } finally {
+            timers.update().recordSince(start);
         }
     }
 
     @Override
     public void delete(Integer integer) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Artist artist = em.find(Artist.class, integer);
+            Set<Integer> albumIds = Set.of();
+            Set<Integer> songIds = Set.of();
             if (artist != null) {
+                albumIds = artist.getAlbumSet().stream().map(Album::getId).collect(Collectors.toSet());
+                songIds = artist.getSongSet().stream().map(Song::getSongId).collect(Collectors.toSet());
                 em.remove(artist);
             }
             em.getTransaction().commit();
+            cache.artistDeleted(integer, albumIds);
+            // The albums and songs went with the artist (cascade)
+            typeahead.remove(TypeaheadIndex.Kind.ARTIST, List.of(integer));
+            typeahead.remove(TypeaheadIndex.Kind.ALBUM, albumIds);
+            typeahead.remove(TypeaheadIndex.Kind.SONG, songIds);
+        } finally {
+            timers.delete().recordSince(start);
         }
     }
 
     @Override
     public boolean validatePrimaryKey(Integer integer) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            Artist artist = em.find(Artist.class, integer);
-            return artist != null;
+            return em.createQuery("SELECT count(a) FROM Artist a WHERE a.id = :id", Long.class)
+                    .setParameter("id", integer)
+                    .getSingleResult() > 0;
+        } finally {
+            timers.validatePrimaryKey().recordSince(start);
         }
     }
 }
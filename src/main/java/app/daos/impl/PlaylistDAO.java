@@ -1,25 +1,125 @@
 package app.daos.impl;
 
+import app.cache.ResourceVersions;
 import app.daos.IDAO;
 import app.dtos.PlaylistDTO;
+import app.dtos.PlaylistEntryDTO;
+import app.dtos.PlaylistSongsDTO;
 import app.entities.Playlist;
+import app.entities.PlaylistEntry;
 import app.entities.Song;
 import app.entities.UserProfile;
+import app.utils.Durations;
+import app.utils.IntArrays;
+import app.metrics.DaoMetrics;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.TypedQuery;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class PlaylistDAO implements IDAO<PlaylistDTO, Integer> {
 
     private static PlaylistDAO instance;
     private static EntityManagerFactory emf;
+    private static final DaoMetrics.Timers timers = DaoMetrics.forDao("PlaylistDAO");
+    private static final ResourceVersions versions = ResourceVersions.getInstance();
+
+    // One row per playlist entry in track order, grouped into PlaylistDTOs by toPlaylistDTOs
+    private static final String PLAYLIST_ROWS =
+            "SELECT p.id, p.playListName, p.totalSeconds, o.username, p.version, e.song.songId " +
+                    "FROM Playlist p JOIN p.owner o LEFT JOIN p.entries e ";
+
+    // A user's playlists in id order without their entries; p.owner.username is the owner_username column, no join
+    private static final String OWNER_PLAYLISTS =
+            "SELECT new app.dtos.PlaylistDTO(p.id, p.playListName, p.totalSeconds, p.owner.username, p.version) " +
+                    "FROM Playlist p WHERE p.owner.username = :u AND p.id > :after ORDER BY p.id";
+    // (playlist id, song id) of every entry in a page of OWNER_PLAYLISTS, in track order. Bounded by the page's
+    // id range instead of an IN list, which would need a bind parameter per playlist
+    private static final String OWNER_ENTRY_PAIRS =
+            "SELECT p.id, e.song.songId FROM PlaylistEntry e JOIN e.playlist p " +
+                    "WHERE p.owner.username = :u AND p.id > :after AND p.id <= :last ORDER BY p.id, e.position";
+    private static final int[] NO_SONGS = new int[0];
+
+    // Each runs as one statement: change the entries and move the total by the changed songs' seconds.
+    // Existing entries are neither loaded nor rewritten, and song ids that do not exist are skipped.
+    // Added songs are appended in the order given, POSITION_GAP apart after the current last entry.
+    // Two appends would compute the same positions, so changeSongs takes LOCK_PLAYLIST_SQL first
+    private static final String ADD_SONGS_SQL =
+            "WITH input AS (" +
+                    "  SELECT CAST(t.song_id AS integer) AS song_id, t.ord" +
+                    "  FROM unnest(string_to_array(:songIds, ',')) WITH ORDINALITY AS t(song_id, ord)" +
+                    "), changed AS (" +
+                    "  INSERT INTO playlist_songs (entry_id, playlist_id, song_id, position)" +
+                    "  SELECT nextval('playlist_entry_seq'), :playlistId, s.song_id," +
+                    "    (SELECT COALESCE(MAX(e.position), 0) FROM playlist_songs e WHERE e.playlist_id = :playlistId)" +
+                    "      + i.ord * " + PlaylistEntry.POSITION_GAP +
+                    "  FROM input i JOIN song s ON s.song_id = i.song_id" +
+                    "  RETURNING song_id, position" +
+                    "), total AS (" +
+                    "  UPDATE playlist SET version = version + 1, total_seconds = total_seconds + COALESCE(" +
+                    "    (SELECT sum(s.duration_seconds) FROM song s JOIN changed c ON c.song_id = s.song_id), 0)" +
+                    "  WHERE playlist_id = :playlistId" +
+                    "  RETURNING total_seconds" +
+                    ") " +
+                    "SELECT t.total_seconds, (SELECT string_agg(CAST(c.song_id AS text), ',' ORDER BY c.position) FROM changed c) FROM total t";
+
+    // Serializes the writers that compute positions on one playlist. Run as its own statement, so the statement
+    // after it takes a fresh READ COMMITTED snapshot that sees the entries of the writer it waited for
+    private static final String LOCK_PLAYLIST_SQL =
+            "SELECT 1 FROM playlist WHERE playlist_id = :playlistId FOR UPDATE";
+
+    // Removes every entry of the given songs
+    private static final String REMOVE_SONGS_SQL =
+            "WITH changed AS (" +
+                    "  DELETE FROM playlist_songs WHERE playlist_id = :playlistId AND song_id IN (:songIds)" +
+                    "  RETURNING song_id, position" +
+                    "), total AS (" +
+                    "  UPDATE playlist SET version = version + 1, total_seconds = total_seconds - COALESCE(" +
+                    "    (SELECT sum(s.duration_seconds) FROM song s JOIN changed c ON c.song_id = s.song_id), 0)" +
+                    "  WHERE playlist_id = :playlistId" +
+                    "  RETURNING total_seconds" +
+                    ") " +
+                    "SELECT t.total_seconds, (SELECT string_agg(CAST(c.song_id AS text), ',' ORDER BY c.position) FROM changed c) FROM total t";
+
+    // Removes one entry, the other entries of the same song stay
+    private static final String REMOVE_ENTRY_SQL =
+            "WITH changed AS (" +
+                    "  DELETE FROM playlist_songs WHERE playlist_id = :playlistId AND entry_id = :entryId" +
+                    "  RETURNING song_id, position" +
+                    "), total AS (" +
+                    "  UPDATE playlist SET version = version + 1, total_seconds = total_seconds - COALESCE(" +
+                    "    (SELECT sum(s.duration_seconds) FROM song s JOIN changed c ON c.song_id = s.song_id), 0)" +
+                    "  WHERE playlist_id = :playlistId" +
+                    "  RETURNING total_seconds" +
+                    ") " +
+                    "SELECT t.total_seconds, (SELECT string_agg(CAST(c.song_id AS text), ',' ORDER BY c.position) FROM changed c) FROM total t";
+
+    // Renumbers a playlist when two neighbours have no free position left between them. Negating first keeps
+    // uk_playlist_songs_position satisfied while the rows are renumbered
+    private static final String NEGATE_POSITIONS_SQL =
+            "UPDATE playlist_songs SET position = -position WHERE playlist_id = :playlistId";
+    private static final String RENUMBER_POSITIONS_SQL =
+            "UPDATE playlist_songs ps SET position = r.rn * " + PlaylistEntry.POSITION_GAP +
+                    " FROM (SELECT entry_id, row_number() OVER (ORDER BY position DESC) AS rn" +
+                    "       FROM playlist_songs WHERE playlist_id = :playlistId) r" +
+                    " WHERE ps.entry_id = r.entry_id";
 
     public static PlaylistDAO getInstance(EntityManagerFactory _emf) {
         if (instance == null) {
@@ -31,36 +131,102 @@ public class PlaylistDAO implements IDAO<PlaylistDTO, Integer> {
 
     @Override
     public PlaylistDTO read(Integer id) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            Playlist p = em.find(Playlist.class, id);
-            return p == null ? null : new PlaylistDTO(p);
+            TypedQuery<Object[]> q = em.createQuery(PLAYLIST_ROWS + "WHERE p.id = :id ORDER BY e.position", Object[].class);
+            q.setParameter("id", id);
+            List<PlaylistDTO> playlists = toPlaylistDTOs(q.getResultList());
+            return playlists.isEmpty() ? null : playlists.get(0);
+        } finally {
+            timers.read().recordSince(start);
         }
     }
 
     public List<PlaylistDTO> readPlaylistsByOwner(String username) {
-        try (var em = emf.createEntityManager()) {
-            var q = em.createQuery(
-                    "SELECT new app.dtos.PlaylistDTO(p) FROM Playlist p WHERE p.owner.username = :u",
-                    PlaylistDTO.class
-            );
-            q.setParameter("u", username);
-            return q.getResultList();
+        return readPlaylistsByOwner(username, 0, Integer.MAX_VALUE);
+    }
+
+    // Keyset pagination on playlist id, two statements per page however many playlists and entries it holds:
+    // the playlists, then their song ids, grouped into one int[] per playlist
+    public List<PlaylistDTO> readPlaylistsByOwner(String username, int after, int limit) {
+        try (EntityManager em = emf.createEntityManager()) {
+            List<PlaylistDTO> playlists = em.createQuery(OWNER_PLAYLISTS, PlaylistDTO.class)
+                    .setParameter("u", username)
+                    .setParameter("after", after)
+                    .setMaxResults(limit)
+                    .getResultList();
+            if (playlists.isEmpty()) {
+                return playlists;
+            }
+            Map<Integer, int[]> songIds;
+            try (Stream<Object[]> pairs = em.createQuery(OWNER_ENTRY_PAIRS, Object[].class)
+                    .setParameter("u", username)
+                    .setParameter("after", after)
+                    .setParameter("last", playlists.get(playlists.size() - 1).getId())
+                    .getResultStream()) {
+                songIds = groupSongIds(pairs.iterator(), playlists.size());
+            }
+            for (PlaylistDTO playlist : playlists) {
+                playlist.setSongIds(IntArrays.asList(songIds.getOrDefault(playlist.getId(), NO_SONGS)));
+            }
+            return playlists;
+        }
+    }
+
+    // Pairs arrive ordered by playlist and position, so each run of one playlist id becomes one int[]
+    private static Map<Integer, int[]> groupSongIds(Iterator<Object[]> pairs, int playlists) {
+        Map<Integer, int[]> grouped = new HashMap<>(playlists * 2);
+        int[] buffer = new int[64];
+        int size = 0;
+        Integer current = null;
+        while (pairs.hasNext()) {
+            Object[] pair = pairs.next();
+            Integer playlistId = (Integer) pair[0];
+            if (!playlistId.equals(current)) {
+                if (current != null) {
+                    grouped.put(current, Arrays.copyOf(buffer, size));
+                }
+                current = playlistId;
+                size = 0;
+            }
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (Integer) pair[1];
         }
+        if (current != null) {
+            grouped.put(current, Arrays.copyOf(buffer, size));
+        }
+        return grouped;
     }
 
     @Override
     public List<PlaylistDTO> readAll() {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            TypedQuery<PlaylistDTO> q = em.createQuery(
-                    "SELECT new app.dtos.PlaylistDTO(p) FROM Playlist p",
-                    PlaylistDTO.class
-            );
-            return q.getResultList();
+            TypedQuery<Object[]> q = em.createQuery(PLAYLIST_ROWS + "ORDER BY p.id, e.position", Object[].class);
+            return toPlaylistDTOs(q.getResultList());
+        } finally {
+            timers.readAll().recordSince(start);
+        }
+    }
+
+    // Rows arrive ordered by playlist and position, so each playlist becomes one DTO collecting its song ids in order
+    private static List<PlaylistDTO> toPlaylistDTOs(List<Object[]> rows) {
+        Map<Integer, PlaylistDTO> playlists = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            PlaylistDTO dto = playlists.computeIfAbsent((Integer) row[0],
+                    id -> new PlaylistDTO(id, (String) row[1], (Integer) row[2], (String) row[3], (Long) row[4]));
+            if (row[5] != null) {
+                dto.getSongIds().add((Integer) row[5]);
+            }
         }
+        return new ArrayList<>(playlists.values());
     }
 
     @Override
     public PlaylistDTO create(PlaylistDTO playlistDTO) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
 
@@ -77,25 +243,28 @@ public class PlaylistDAO implements IDAO<PlaylistDTO, Integer> {
             p.setOwner(ownerRef);
 
             if (playlistDTO.getSongIds() != null && !playlistDTO.getSongIds().isEmpty()) {
-                Set<Song> refs = new HashSet<>();
-                for (Integer songId : playlistDTO.getSongIds()) {
-                    refs.add(em.getReference(Song.class, songId));
-                }
-                p.setSongs(refs);
+                replaceEntries(em, p, playlistDTO.getSongIds());
             }
 
-            // Our @PrePersist will recalculate the totalDuration
             em.persist(p);
             em.getTransaction().commit();
+            versions.changed(ResourceVersions.Collection.PLAYLISTS);
             return new PlaylistDTO(p);
+        } finally {
+            timers.create().recordSince(start);
         }
     }
 
     @Override
     public PlaylistDTO update(Integer id, PlaylistDTO playlistDTO) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
 
+            // Renumbers every entry, an append running at the same time would collide with the new positions
+            if (playlistDTO.getSongIds() != null) {
+                lockPlaylist(em, id);
+            }
             Playlist p = em.find(Playlist.class, id);
             if (p == null) throw new IllegalArgumentException("Playlist not found: " + id);
 
@@ -109,33 +278,237 @@ public class PlaylistDAO implements IDAO<PlaylistDTO, Integer> {
             }
 
             if (playlistDTO.getSongIds() != null) {
-                Set<Song> newSongs = new HashSet<>();
-                for (Integer songId : playlistDTO.getSongIds()) {
-                    newSongs.add(em.getReference(Song.class, songId));
-                }
-                p.setSongs(newSongs);
+                replaceEntries(em, p, playlistDTO.getSongIds());
+                // entries is the inverse side, changing it does not bump the version by itself
+                em.lock(p, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
             }
 
             Playlist mergedPlaylist = em.merge(p);
             em.getTransaction().commit();
+            if (playlistDTO.getSongIds() != null) {
+                evictEntries(id);
+            }
+            versions.playlistChanged(id);
             return new PlaylistDTO(mergedPlaylist);
+        } finally {
+            timers.update().recordSince(start);
+        }
+    }
+
+    public PlaylistSongsDTO addSongs(int playlistId, List<Integer> songIds) {
+        // Passed as one text parameter, an IN list would lose the order and the duplicates
+        String orderedIds = songIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return changeSongs(ADD_SONGS_SQL, playlistId, "songIds", orderedIds);
+    }
+
+    public PlaylistSongsDTO removeSongs(int playlistId, Collection<Integer> songIds) {
+        return changeSongs(REMOVE_SONGS_SQL, playlistId, "songIds", songIds);
+    }
+
+    // Removes one occurrence of a song. The songIds of the result are empty when the entry is not in the playlist
+    public PlaylistSongsDTO removeEntry(int playlistId, long entryId) {
+        return changeSongs(REMOVE_ENTRY_SQL, playlistId, "entryId", entryId);
+    }
+
+    // Returns null when the playlist does not exist
+    private PlaylistSongsDTO changeSongs(String sql, int playlistId, String parameter, Object value) {
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            try {
+                if (!lockPlaylist(em, playlistId)) {
+                    return null;
+                }
+                @SuppressWarnings("unchecked")
+                List<Object[]> rows = em.createNativeQuery(sql)
+                        .setParameter("playlistId", playlistId)
+                        .setParameter(parameter, value)
+                        .unwrap(NativeQuery.class)
+                        .addSynchronizedQuerySpace("playlist_songs")
+                        .addSynchronizedQuerySpace("playlist")
+                        .getResultList();
+                em.getTransaction().commit();
+                evictEntries(playlistId);
+                versions.playlistChanged(playlistId);
+
+                if (rows.isEmpty()) {
+                    return null;
+                }
+                Object[] row = rows.get(0);
+                String changed = (String) row[1];
+                List<Integer> changedIds = changed == null ? List.of()
+                        : Arrays.stream(changed.split(",")).map(Integer::valueOf).toList();
+                return new PlaylistSongsDTO(changedIds, Durations.format(((Number) row[0]).intValue()));
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
+        }
+    }
+
+    // Drops the playlist's cached Playlist.entries. The native writes are queries (getResultList), which
+    // invalidate no cache regions, and a JPQL position update only invalidates the entries, not the order
+    private static void evictEntries(int playlistId) {
+        emf.unwrap(SessionFactory.class).getCache().evictCollectionData(Playlist.class.getName() + ".entries", playlistId);
+    }
+
+    // Locks the playlist row until the transaction ends, false when the playlist does not exist
+    private static boolean lockPlaylist(EntityManager em, int playlistId) {
+        return !em.createNativeQuery(LOCK_PLAYLIST_SQL)
+                .setParameter("playlistId", playlistId)
+                .getResultList()
+                .isEmpty();
+    }
+
+    // A window of the playlist in track order. Served from the (playlist_id, position) index without sorting;
+    // afterPosition continues from the last position of the previous window instead of counting past offset rows
+    public List<PlaylistEntryDTO> readEntries(int playlistId, int offset, int limit, Long afterPosition) {
+        try (EntityManager em = emf.createEntityManager()) {
+            TypedQuery<PlaylistEntryDTO> q = em.createQuery(
+                    "SELECT new app.dtos.PlaylistEntryDTO(e.id, e.position, s.songId, s.songName, a.artistName, s.durationSeconds) " +
+                            "FROM PlaylistEntry e JOIN e.song s JOIN s.mainArtist a " +
+                            "WHERE e.playlist.id = :playlistId AND e.position > :after ORDER BY e.position", PlaylistEntryDTO.class);
+            q.setParameter("playlistId", playlistId);
+            q.setParameter("after", afterPosition == null ? 0L : afterPosition);
+            q.setFirstResult(offset);
+            q.setMaxResults(limit);
+            return q.getResultList();
+        }
+    }
+
+    // Moves an entry right after afterEntryId, or to the top when that is null, by giving it the midpoint
+    // position between its new neighbours. Only when they are adjacent is the playlist renumbered.
+    // Returns false when the entry or the anchor entry is not in the playlist
+    public boolean moveEntry(int playlistId, long entryId, Long afterEntryId) {
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            try {
+                // Two moves into the same gap would pick the same midpoint
+                if (!lockPlaylist(em, playlistId) || findPosition(em, playlistId, entryId) == null) {
+                    return false;
+                }
+                Long lower = 0L;
+                if (afterEntryId != null) {
+                    lower = findPosition(em, playlistId, afterEntryId);
+                    if (lower == null) {
+                        return false;
+                    }
+                }
+                Long position = positionAfter(em, playlistId, entryId, lower);
+                if (position == null) {
+                    renumber(em, playlistId);
+                    lower = afterEntryId == null ? 0L : findPosition(em, playlistId, afterEntryId);
+                    position = positionAfter(em, playlistId, entryId, lower);
+                }
+                em.createQuery("UPDATE PlaylistEntry e SET e.position = :position WHERE e.id = :entryId")
+                        .setParameter("position", position)
+                        .setParameter("entryId", entryId)
+                        .executeUpdate();
+                // The order is part of the playlist's representation
+                em.createNativeQuery("UPDATE playlist SET version = version + 1 WHERE playlist_id = :playlistId")
+                        .setParameter("playlistId", playlistId)
+                        .unwrap(NativeQuery.class)
+                        .addSynchronizedQuerySpace("playlist")
+                        .executeUpdate();
+                em.getTransaction().commit();
+                evictEntries(playlistId);
+                versions.playlistChanged(playlistId);
+                return true;
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
+        }
+    }
+
+    private static Long findPosition(EntityManager em, int playlistId, long entryId) {
+        return em.createQuery("SELECT e.position FROM PlaylistEntry e WHERE e.id = :entryId AND e.playlist.id = :playlistId", Long.class)
+                .setParameter("entryId", entryId)
+                .setParameter("playlistId", playlistId)
+                .getResultStream().findFirst()
+                .orElse(null);
+    }
+
+    // Midpoint between lower and the next entry (ignoring the one being moved), null when there is no room
+    private static Long positionAfter(EntityManager em, int playlistId, long movingEntryId, long lower) {
+        Long upper = em.createQuery("SELECT min(e.position) FROM PlaylistEntry e " +
+                        "WHERE e.playlist.id = :playlistId AND e.position > :lower AND e.id <> :entryId", Long.class)
+                .setParameter("playlistId", playlistId)
+                .setParameter("lower", lower)
+                .setParameter("entryId", movingEntryId)
+                .getSingleResult();
+        if (upper == null) {
+            return lower + PlaylistEntry.POSITION_GAP;
+        }
+        if (upper - lower < 2) {
+            return null;
+        }
+        return lower + (upper - lower) / 2;
+    }
+
+    private static void renumber(EntityManager em, int playlistId) {
+        for (String sql : List.of(NEGATE_POSITIONS_SQL, RENUMBER_POSITIONS_SQL)) {
+            em.createNativeQuery(sql)
+                    .setParameter("playlistId", playlistId)
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedQuerySpace("playlist_songs")
+                    .executeUpdate();
+        }
+    }
+
+    // Replaces all entries with the given songs in order, unknown song ids are skipped.
+    // Songs are attached as references, only their durations are read, in one query
+    private static void replaceEntries(EntityManager em, Playlist p, List<Integer> songIds) {
+        Map<Integer, Integer> seconds = new HashMap<>();
+        if (!songIds.isEmpty()) {
+            em.createQuery("SELECT s.songId, s.durationSeconds FROM Song s WHERE s.songId IN :ids", Object[].class)
+                    .setParameter("ids", new HashSet<>(songIds))
+                    .getResultList()
+                    .forEach(r -> seconds.put((Integer) r[0], (Integer) r[1]));
+        }
+        if (!p.getEntries().isEmpty()) {
+            p.getEntries().clear();
+            // Hibernate flushes inserts before orphan deletes, which would collide on (playlist_id, position)
+            em.flush();
+        }
+        int totalSeconds = 0;
+        long position = 0;
+        for (Integer songId : songIds) {
+            Integer songSeconds = seconds.get(songId);
+            if (songSeconds == null) {
+                continue;
+            }
+            position += PlaylistEntry.POSITION_GAP;
+            p.getEntries().add(new PlaylistEntry(null, p, em.getReference(Song.class, songId), position));
+            totalSeconds += songSeconds;
         }
+        p.setTotalSeconds(totalSeconds);
     }
 
     @Override
     public void delete(Integer id) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Playlist p = em.find(Playlist.class, id);
             if (p != null) em.remove(p);
             em.getTransaction().commit();
+            versions.playlistChanged(id);
+        } finally {
+            timers.delete().recordSince(start);
         }
     }
 
     @Override
     public boolean validatePrimaryKey(Integer id) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            return em.find(Playlist.class, id) != null;
+            return em.createQuery("SELECT count(p) FROM Playlist p WHERE p.id = :id", Long.class)
+                    .setParameter("id", id)
+                    .getSingleResult() > 0;
+        } finally {
+            timers.validatePrimaryKey().recordSince(start);
         }
     }
 }
\ No newline at end of file
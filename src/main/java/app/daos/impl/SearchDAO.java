@@ -0,0 +1,105 @@
+package app.daos.impl;
+
+import app.dtos.SearchHitDTO;
+import app.dtos.SearchResultDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Purpose: Ranked search over song, artist and album names (db/migration/V3__search.sql).
+ * A row matches when all words of the query are in its tsvector, the last one as a prefix so a
+ * half-typed word already matches, or when its name is trigram-similar to the query, which catches typos.
+ * Each list is ranked by ts_rank plus similarity, among the MAX_CANDIDATES matches whose names are most
+ * similar to the query. Those come in order from the GiST trigram index (db/migration/V5__search_candidate_order.sql).
+ */
+public class SearchDAO {
+
+    // Matches are collected up to this many per list before ranking, nearest name first, so a one-letter prefix
+    // matching half the catalog costs the same as a precise query. Pages can reach up to here
+    public static final int MAX_CANDIDATES = 1000;
+    private static final int MAX_WORDS = 8;
+
+    private static final String SONG_SEARCH_SQL =
+            "SELECT s.song_id, s.song_name, a.artist_name," +
+                    "  ts_rank(s.search_vector, q.query) + similarity(lower(s.song_name), :text) AS rank " +
+                    "FROM (SELECT song_id, song_name, main_artist_id, search_vector FROM song" +
+                    "      WHERE search_vector @@ to_tsquery('simple', :tsquery) OR lower(song_name) % :text" +
+                    "      ORDER BY lower(song_name) <-> :text LIMIT " + MAX_CANDIDATES + ") s " +
+                    "JOIN artist a ON a.artist_id = s.main_artist_id " +
+                    "CROSS JOIN to_tsquery('simple', :tsquery) AS q(query) " +
+                    "ORDER BY rank DESC, s.song_id LIMIT :limit OFFSET :offset";
+
+    private static final String ARTIST_SEARCH_SQL =
+            "SELECT a.artist_id, a.artist_name, CAST(NULL AS varchar)," +
+                    "  ts_rank(a.search_vector, q.query) + similarity(lower(a.artist_name), :text) AS rank " +
+                    "FROM (SELECT artist_id, artist_name, search_vector FROM artist" +
+                    "      WHERE search_vector @@ to_tsquery('simple', :tsquery) OR lower(artist_name) % :text" +
+                    "      ORDER BY lower(artist_name) <-> :text LIMIT " + MAX_CANDIDATES + ") a " +
+                    "CROSS JOIN to_tsquery('simple', :tsquery) AS q(query) " +
+                    "ORDER BY rank DESC, a.artist_id LIMIT :limit OFFSET :offset";
+
+    private static final String ALBUM_SEARCH_SQL =
+            "SELECT al.album_id, al.album_name, a.artist_name," +
+                    "  ts_rank(al.search_vector, q.query) + similarity(lower(al.album_name), :text) AS rank " +
+                    "FROM (SELECT album_id, album_name, artist_id, search_vector FROM album" +
+                    "      WHERE search_vector @@ to_tsquery('simple', :tsquery) OR lower(album_name) % :text" +
+                    "      ORDER BY lower(album_name) <-> :text LIMIT " + MAX_CANDIDATES + ") al " +
+                    "JOIN artist a ON a.artist_id = al.artist_id " +
+                    "CROSS JOIN to_tsquery('simple', :tsquery) AS q(query) " +
+                    "ORDER BY rank DESC, al.album_id LIMIT :limit OFFSET :offset";
+
+    private static SearchDAO instance;
+    private static EntityManagerFactory emf;
+
+    public static SearchDAO getInstance(EntityManagerFactory _emf) {
+        if (instance == null) {
+            emf = _emf;
+            instance = new SearchDAO();
+        }
+        return instance;
+    }
+
+    public SearchResultDTO search(String query, int offset, int limit) {
+        String text = query.trim().toLowerCase(Locale.ROOT);
+        String tsquery = toPrefixTsQuery(text);
+        if (tsquery == null) {
+            return new SearchResultDTO(query, offset, limit, List.of(), List.of(), List.of());
+        }
+        try (EntityManager em = emf.createEntityManager()) {
+            return new SearchResultDTO(query, offset, limit,
+                    hits(em, SONG_SEARCH_SQL, text, tsquery, offset, limit),
+                    hits(em, ARTIST_SEARCH_SQL, text, tsquery, offset, limit),
+                    hits(em, ALBUM_SEARCH_SQL, text, tsquery, offset, limit));
+        }
+    }
+
+    // "daft pu" -> "daft & pu:*". Only letters and digits are kept, so user input cannot break the tsquery syntax
+    static String toPrefixTsQuery(String text) {
+        List<String> words = Arrays.stream(text.split("[^\\p{L}\\p{N}]+"))
+                .filter(w -> !w.isEmpty())
+                .limit(MAX_WORDS)
+                .toList();
+        if (words.isEmpty()) {
+            return null;
+        }
+        return words.stream().collect(Collectors.joining(" & ")) + ":*";
+    }
+
+    private static List<SearchHitDTO> hits(EntityManager em, String sql, String text, String tsquery, int offset, int limit) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery(sql)
+                .setParameter("text", text)
+                .setParameter("tsquery", tsquery)
+                .setParameter("limit", limit)
+                .setParameter("offset", offset)
+                .getResultList();
+        return rows.stream()
+                .map(r -> new SearchHitDTO(((Number) r[0]).intValue(), (String) r[1], (String) r[2], ((Number) r[3]).doubleValue()))
+                .toList();
+    }
+}
@@ -1,25 +1,56 @@
 package app.daos.impl;
 
 
+import app.cache.CatalogCache;
+import app.cache.ResourceVersions;
 import app.daos.IDAO;
 import app.dtos.SongDTO;
 import app.entities.Album;
 import app.entities.Artist;
 import app.entities.Song;
+import app.search.TypeaheadIndex;
+import app.utils.Durations;
+import app.metrics.DaoMetrics;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.TypedQuery;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.NativeQuery;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class SongDAO implements IDAO<SongDTO, Integer> {
 
     private static SongDAO instance;
     private static EntityManagerFactory emf;
+    private static final DaoMetrics.Timers timers = DaoMetrics.forDao("SongDAO");
+    private static final CatalogCache cache = CatalogCache.getInstance();
+    private static final TypeaheadIndex typeahead = TypeaheadIndex.getInstance();
+    private static final ResourceVersions versions = ResourceVersions.getInstance();
 
+    // Rows fetched per round trip when streaming the whole catalog
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Selects exactly the columns SongDTO needs, so the EAGER artist/album graph is never loaded
+    private static final String SONG_PROJECTION =
+            "SELECT new app.dtos.SongDTO(s.songId, s.songName, s.genre, s.featuredArtist, s.durationSeconds, " +
+                    "a.id, a.artistName, al.id, al.albumName, s.version, a.version, al.version) " +
+                    "FROM Song s JOIN s.mainArtist a JOIN s.album al ";
+
+    // Deletes the song's entries and moves each playlist that had them by the song's seconds once per entry,
+    // as one statement. The playlists come from the deleted rows, so a playlist is only touched if it lost one
+    private static final String UNLINK_SONG_SQL =
+            "WITH unlinked AS (" +
+                    "  DELETE FROM playlist_songs WHERE song_id = :id RETURNING playlist_id" +
+                    ") " +
+                    "UPDATE playlist p SET total_seconds = p.total_seconds - :seconds * c.entries, version = p.version + 1 " +
+                    "FROM (SELECT playlist_id, count(*) AS entries FROM unlinked GROUP BY playlist_id) c " +
+                    "WHERE p.playlist_id = c.playlist_id";
 
     public static SongDAO getInstance(EntityManagerFactory _emf) {
         if (instance == null) {
@@ -31,28 +62,82 @@ public class SongDAO implements IDAO<SongDTO, Integer> {
 
     @Override
     public SongDTO read(Integer integer) {
+        long start = System.nanoTime();
+        try {
+            return cache.songs().getOrLoad(integer, this::load);
+        } finally {
+            timers.read().recordSince(start);
+        }
+    }
+
+    // ETag of the cached DTO, null when it is not cached. Never queries
+    public String cachedETag(int id) {
+        SongDTO cached = cache.songs().peek(id);
+        return cached == null ? null : cached.getEtag();
+    }
+
+    private SongDTO load(Integer integer) {
         try (EntityManager em = emf.createEntityManager()) {
-            Song song = em.find(Song.class, integer);
-            return new SongDTO(song);
+            return em.createQuery(SONG_PROJECTION + "WHERE s.songId = :id", SongDTO.class)
+                    .setParameter("id", integer)
+                    .getResultStream().findFirst()
+                    .orElse(null);
         }
     }
 
     @Override
     public List<SongDTO> readAll() {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            TypedQuery<SongDTO> query = em.createQuery("SELECT new app.dtos.SongDTO(s) FROM Song s", SongDTO.class);
+            TypedQuery<SongDTO> query = em.createQuery(SONG_PROJECTION + "ORDER BY s.songId", SongDTO.class);
             return query.getResultList();
+        } finally {
+            timers.readAll().recordSince(start);
+        }
+    }
+
+    // Keyset pagination on song_id: WHERE song_id > :after ORDER BY song_id LIMIT :limit
+    public List<SongDTO> readPage(int after, int limit) {
+        try (EntityManager em = emf.createEntityManager()) {
+            TypedQuery<SongDTO> query = em.createQuery(
+                    SONG_PROJECTION + "WHERE s.songId > :after ORDER BY s.songId", SongDTO.class);
+            query.setParameter("after", after);
+            query.setMaxResults(limit);
+            return query.getResultList();
+        }
+    }
+
+    // Hands every song to the consumer while the result set is being read, so nothing is collected in memory
+    public void streamAll(Consumer<SongDTO> consumer) {
+        try (EntityManager em = emf.createEntityManager()) {
+            // PostgreSQL only honours the fetch size (server side cursor) inside a transaction
+            em.getTransaction().begin();
+            try (Stream<SongDTO> rows = em.createQuery(SONG_PROJECTION + "ORDER BY s.songId", SongDTO.class)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .getResultStream()) {
+                rows.forEach(consumer);
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
         }
     }
 
     @Override
     public SongDTO create(SongDTO songDTO) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
-            // Look up by names first
+            // Look up by names first. Both lookups use the query cache when L2_CACHE_ENABLED is set
+            // (getResultList, as streamed results bypass the query cache)
             Artist artist = em.createQuery(
                             "select a from Artist a where lower(a.artistName) = lower(:n)", Artist.class)
                     .setParameter("n", songDTO.getMainArtistName().trim())
-                    .getResultStream().findFirst()
+                    .setHint(HibernateHints.HINT_CACHEABLE, true)
+                    .setHint(HibernateHints.HINT_CACHE_REGION, "catalog.lookup")
+                    .setMaxResults(1)
+                    .getResultList().stream().findFirst()
                     .orElse(null);
 
             if (artist == null) {
@@ -63,7 +148,10 @@ public class SongDAO implements IDAO<SongDTO, Integer> {
                             "select al from Album al where lower(al.albumName) = lower(:n) and al.artist.id = :aid", Album.class)
                     .setParameter("n", songDTO.getAlbumName().trim())
                     .setParameter("aid", artist.getId())
-                    .getResultStream().findFirst()
+                    .setHint(HibernateHints.HINT_CACHEABLE, true)
+                    .setHint(HibernateHints.HINT_CACHE_REGION, "catalog.lookup")
+                    .setMaxResults(1)
+                    .getResultList().stream().findFirst()
                     .orElse(null);
 
             if (album == null) {
@@ -79,24 +167,38 @@ public class SongDAO implements IDAO<SongDTO, Integer> {
             s.setAlbum(album);
 
             em.persist(s);
+            addToAlbumTotal(em, album.getId(), s.getDurationSeconds());
             em.getTransaction().commit();
+            cache.albumTotalsChanged(album.getId());
+            cache.songsAdded();
+            typeahead.put(TypeaheadIndex.Kind.SONG, s.getSongId(), s.getSongName());
             return new SongDTO(s);
+        } finally {
+            timers.create().recordSince(start);
         }
     }
 
 
+    // Bulk import, see SongImporter. Its finish() updates the catalog cache for the albums that got songs
+    public SongImporter importer(int chunkSize) {
+        return new SongImporter(emf, chunkSize);
+    }
+
     @Override
     public SongDTO update(Integer integer, SongDTO songDTO) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Song s = em.find(Song.class, integer);
             if (s == null) throw new IllegalArgumentException("Song not found: " + integer);
+            int oldSeconds = s.getDurationSeconds();
+            int oldAlbumId = s.getAlbum().getId();
 
             s.setSongName(songDTO.getSongName());
             s.setGenre(songDTO.getGenre());
             s.setFeaturedArtist(songDTO.getFeaturedArtist());
             if (songDTO.getDuration() != null) {
-                s.setDuration(songDTO.getDuration());
+                s.setDurationSeconds(Durations.parse(songDTO.getDuration()));
             }
 
             // Relations, if they are provided
@@ -107,38 +209,107 @@ public class SongDAO implements IDAO<SongDTO, Integer> {
                 s.setAlbum(em.getReference(Album.class, songDTO.getAlbumId()));
             }
 
+            // Totals move by the difference, the other songs are never read
+            int newSeconds = s.getDurationSeconds();
+            int newAlbumId = s.getAlbum().getId();
+            if (newAlbumId != oldAlbumId) {
+                addToAlbumTotal(em, oldAlbumId, -oldSeconds);
+                addToAlbumTotal(em, newAlbumId, newSeconds);
+            } else {
+                addToAlbumTotal(em, oldAlbumId, newSeconds - oldSeconds);
+            }
+            addToPlaylistTotals(em, integer, newSeconds - oldSeconds);
+
             Song mergedSong = em.merge(s);
             em.getTransaction().commit();
+            cache.songChanged(integer);
+            cache.albumTotalsChanged(oldAlbumId);
+            cache.albumTotalsChanged(newAlbumId);
+            if (newSeconds != oldSeconds) {
+                versions.playlistsChanged();
+            }
+            typeahead.put(TypeaheadIndex.Kind.SONG, integer, mergedSong.getSongName());
 
             return new SongDTO(mergedSong);
+        } finally {
+            timers.update().recordSince(start);
         }
     }
 
     @Override
     public void delete(Integer id) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
 
             Song s = em.find(Song.class, id);
+            Integer albumId = null;
             if (s != null) {
-                var playlistsCopy = new java.util.HashSet<>(s.getPlaylists());
-                for (var p : playlistsCopy) {
-                    p.getSongs().remove(s);
-                }
-                s.getPlaylists().clear();
+                albumId = s.getAlbum().getId();
+                // Unlink and subtract from the totals in SQL, instead of loading every playlist holding the song.
+                // Every playlist that lost an entry gets a new version, also when the song was 0:00 long
+                em.createNativeQuery(UNLINK_SONG_SQL)
+                        .setParameter("id", id)
+                        .setParameter("seconds", s.getDurationSeconds())
+                        .unwrap(NativeQuery.class)
+                        // Limits the L2 invalidation to what reads playlist_songs and playlist
+                        .addSynchronizedQuerySpace("playlist_songs")
+                        .addSynchronizedQuerySpace("playlist")
+                        .executeUpdate();
+                addToAlbumTotal(em, albumId, -s.getDurationSeconds());
 
                 em.remove(s);
             }
 
             em.getTransaction().commit();
+            cache.songChanged(id);
+            versions.playlistsChanged();
+            typeahead.remove(TypeaheadIndex.Kind.SONG, List.of(id));
+            if (albumId != null) {
+                cache.albumTotalsChanged(albumId);
+            }
+        } finally {
+            timers.delete().recordSince(start);
+        }
+    }
+
+    // Also used by SongImporter, must run inside the caller's transaction
+    static void addToAlbumTotal(EntityManager em, int albumId, int deltaSeconds) {
+        if (deltaSeconds == 0) {
+            return;
         }
+        // VERSIONED bumps the version as well, the total is part of AlbumDTO
+        em.createQuery("UPDATE VERSIONED Album al SET al.totalSeconds = al.totalSeconds + :delta WHERE al.id = :id")
+                .setParameter("delta", deltaSeconds)
+                .setParameter("id", albumId)
+                .executeUpdate();
+    }
+
+    private static void addToPlaylistTotals(EntityManager em, int songId, int deltaSeconds) {
+        if (deltaSeconds == 0) {
+            return;
+        }
+        // A playlist can hold the song more than once, so the delta counts once per entry
+        em.createNativeQuery("UPDATE playlist p SET total_seconds = p.total_seconds + :delta * c.entries, version = p.version + 1 " +
+                        "FROM (SELECT playlist_id, count(*) AS entries FROM playlist_songs WHERE song_id = :songId " +
+                        "GROUP BY playlist_id) c WHERE p.playlist_id = c.playlist_id")
+                .setParameter("delta", deltaSeconds)
+                .setParameter("songId", songId)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("playlist")
+                .executeUpdate();
     }
 
     @Override
     public boolean validatePrimaryKey(Integer integer) {
+        long start = System.nanoTime();
         try  (EntityManager em = emf.createEntityManager()) {
-            Song s = em.find(Song.class, integer);
-            return s != null;
+            // Count instead of em.find, which would pull in the whole EAGER artist/album graph
+            return em.createQuery("SELECT count(s) FROM Song s WHERE s.songId = :id", Long.class)
+                    .setParameter("id", integer)
+                    .getSingleResult() > 0;
+        } finally {
+            timers.validatePrimaryKey().recordSince(start);
         }
     }
 
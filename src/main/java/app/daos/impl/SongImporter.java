@@ -0,0 +1,197 @@
+package app.daos.impl;
+
+import app.cache.CatalogCache;
+import app.dtos.SongDTO;
+import app.dtos.SongImportResultDTO;
+import app.entities.Album;
+import app.entities.Artist;
+import app.entities.Song;
+import app.search.TypeaheadIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+
+import java.util.*;
+
+/**
+ * Purpose: Imports songs in chunks. Each chunk resolves its artist and album names with one query each
+ * (names already seen earlier in the import are remembered), persists the songs with JDBC batching and
+ * commits. A chunk that fails on commit is retried row by row, so one bad row only fails itself.
+ * Get one from SongDAO.importer, add rows in order and call finish.
+ */
+public class SongImporter {
+
+    private final EntityManagerFactory emf;
+    private final int chunkSize;
+    private final SongImportResultDTO result = new SongImportResultDTO();
+    private final Map<Integer, SongDTO> chunk = new LinkedHashMap<>();
+
+    // lower(artist name) -> id, and "artistId/lower(album name)" -> id, for the whole import
+    private final Map<String, Integer> artistIds = new HashMap<>();
+    private final Map<String, Integer> albumIds = new HashMap<>();
+    // Albums whose total changed, dropped from the catalog cache when the import is done
+    private final Set<Integer> changedAlbums = new HashSet<>();
+
+    SongImporter(EntityManagerFactory emf, int chunkSize) {
+        this.emf = emf;
+        this.chunkSize = chunkSize;
+    }
+
+    public void add(int row, SongDTO song) {
+        result.rowReceived();
+        chunk.put(row, song);
+        if (chunk.size() >= chunkSize) {
+            flushChunk();
+        }
+    }
+
+    // A row that could not even be read from the request body
+    public void reject(int row, String message) {
+        result.rowReceived();
+        result.rowFailed(row, message);
+    }
+
+    public SongImportResultDTO finish() {
+        if (!chunk.isEmpty()) {
+            flushChunk();
+        }
+        changedAlbums.forEach(CatalogCache.getInstance()::albumTotalsChanged);
+        if (!changedAlbums.isEmpty()) {
+            CatalogCache.getInstance().songsAdded();
+        }
+        return result;
+    }
+
+    private void flushChunk() {
+        try (EntityManager em = emf.createEntityManager()) {
+            resolveNames(em);
+
+            // Rows whose artist/album does not exist fail here, the rest are inserted together
+            Map<Integer, Song> songs = new LinkedHashMap<>();
+            for (Map.Entry<Integer, SongDTO> row : chunk.entrySet()) {
+                SongDTO dto = row.getValue();
+                Integer artistId = artistIds.get(normalize(dto.getMainArtistName()));
+                if (artistId == null) {
+                    result.rowFailed(row.getKey(), "Artist not found: " + dto.getMainArtistName());
+                    continue;
+                }
+                Integer albumId = albumIds.get(albumKey(artistId, dto.getAlbumName()));
+                if (albumId == null) {
+                    result.rowFailed(row.getKey(), "Album not found for artist '" + dto.getMainArtistName() +
+                            "': " + dto.getAlbumName());
+                    continue;
+                }
+                Song song = dto.toEntity();
+                song.setSongId(null);
+                // References only, so neither the artist nor the album is loaded
+                song.setMainArtist(em.getReference(Artist.class, artistId));
+                song.setAlbum(em.getReference(Album.class, albumId));
+                songs.put(row.getKey(), song);
+            }
+
+            if (!songs.isEmpty()) {
+                try {
+                    persist(em, songs.values());
+                    result.rowsImported(songs.size());
+                } catch (RuntimeException e) {
+                    em.clear();
+                    persistOneByOne(em, songs);
+                }
+            }
+        } finally {
+            chunk.clear();
+        }
+    }
+
+    private void persist(EntityManager em, Collection<Song> songs) {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        try {
+            // One total update per album in the chunk, in the same transaction as the inserts
+            Map<Integer, Integer> albumDeltas = new HashMap<>();
+            for (Song song : songs) {
+                em.persist(song);
+                albumDeltas.merge(song.getAlbum().getId(), song.getDurationSeconds(), Integer::sum);
+            }
+            albumDeltas.forEach((albumId, delta) -> SongDAO.addToAlbumTotal(em, albumId, delta));
+            tx.commit();
+            changedAlbums.addAll(albumDeltas.keySet());
+            Map<Integer, String> names = new HashMap<>();
+            songs.forEach(song -> names.put(song.getSongId(), song.getSongName()));
+            TypeaheadIndex.getInstance().putAll(TypeaheadIndex.Kind.SONG, names);
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            em.clear();
+        }
+    }
+
+    private void persistOneByOne(EntityManager em, Map<Integer, Song> songs) {
+        for (Map.Entry<Integer, Song> row : songs.entrySet()) {
+            Song song = row.getValue();
+            song.setSongId(null);
+            // Fresh references, the ones from the failed attempt belonged to the cleared persistence context
+            song.setMainArtist(em.getReference(Artist.class, song.getMainArtist().getId()));
+            song.setAlbum(em.getReference(Album.class, song.getAlbum().getId()));
+            try {
+                persist(em, List.of(song));
+                result.rowsImported(1);
+            } catch (RuntimeException e) {
+                result.rowFailed(row.getKey(), rootMessage(e));
+            }
+        }
+    }
+
+    // One IN query per entity for the names this import has not seen yet
+    private void resolveNames(EntityManager em) {
+        Set<String> artistNames = new HashSet<>();
+        for (SongDTO dto : chunk.values()) {
+            String name = normalize(dto.getMainArtistName());
+            if (!artistIds.containsKey(name)) {
+                artistNames.add(name);
+            }
+        }
+        if (!artistNames.isEmpty()) {
+            em.createQuery("SELECT a.id, lower(a.artistName) FROM Artist a WHERE lower(a.artistName) IN :names", Object[].class)
+                    .setParameter("names", artistNames)
+                    .getResultList()
+                    .forEach(r -> artistIds.putIfAbsent((String) r[1], (Integer) r[0]));
+        }
+
+        Set<Integer> albumArtistIds = new HashSet<>();
+        Set<String> albumNames = new HashSet<>();
+        for (SongDTO dto : chunk.values()) {
+            Integer artistId = artistIds.get(normalize(dto.getMainArtistName()));
+            if (artistId != null && !albumIds.containsKey(albumKey(artistId, dto.getAlbumName()))) {
+                albumArtistIds.add(artistId);
+                albumNames.add(normalize(dto.getAlbumName()));
+            }
+        }
+        if (!albumNames.isEmpty()) {
+            em.createQuery("SELECT al.id, lower(al.albumName), al.artist.id FROM Album al " +
+                            "WHERE al.artist.id IN :artistIds AND lower(al.albumName) IN :names", Object[].class)
+                    .setParameter("artistIds", albumArtistIds)
+                    .setParameter("names", albumNames)
+                    .getResultList()
+                    .forEach(r -> albumIds.putIfAbsent(((Integer) r[2]) + "/" + r[1], (Integer) r[0]));
+        }
+    }
+
+    private static String albumKey(int artistId, String albumName) {
+        return artistId + "/" + normalize(albumName);
+    }
+
+    // Same matching as SongDAO.create: trimmed and case-insensitive
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+}
@@ -6,6 +6,7 @@ import app.dtos.PlaylistDTO;
 import app.entities.UserProfile;
 import app.entities.Playlist;
 import app.security.entities.User;
+import app.metrics.DaoMetrics;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.TypedQuery;
@@ -18,6 +19,7 @@ public class UserProfileDAO implements IDAO<UserProfileDTO, String> {
 
     private static UserProfileDAO instance;
     private static EntityManagerFactory emf;
+    private static final DaoMetrics.Timers timers = DaoMetrics.forDao("UserProfileDAO");
 
     public static UserProfileDAO getInstance(EntityManagerFactory _emf) {
         if (instance == null) {
@@ -29,25 +31,32 @@ public class UserProfileDAO implements IDAO<UserProfileDTO, String> {
 
     @Override
     public UserProfileDTO read(String username) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             UserProfile profile = em.find(UserProfile.class, username);
             return profile == null ? null : new UserProfileDTO(profile);
+        } finally {
+            timers.read().recordSince(start);
         }
     }
 
     @Override
     public List<UserProfileDTO> readAll() {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             TypedQuery<UserProfileDTO> q = em.createQuery(
                     "SELECT new app.dtos.UserProfileDTO(up) FROM UserProfile up",
                     UserProfileDTO.class
             );
             return q.getResultList();
+        } finally {
+            timers.readAll().recordSince(start);
         }
     }
 
     @Override
     public UserProfileDTO create(UserProfileDTO dto) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
 
@@ -73,11 +82,14 @@ public class UserProfileDAO implements IDAO<UserProfileDTO, String> {
             em.persist(profile);
             em.getTransaction().commit();
             return new UserProfileDTO(profile);
+        } finally {
+            timers.create().recordSince(start);
         }
     }
 
     @Override
     public UserProfileDTO update(String username, UserProfileDTO dto) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
 
@@ -110,11 +122,14 @@ public class UserProfileDAO implements IDAO<UserProfileDTO, String> {
 
             em.getTransaction().commit();
             return new UserProfileDTO(profile);
+        } finally {
+            timers.update().recordSince(start);
         }
     }
 
     @Override
     public void delete(String username) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             UserProfile profile = em.find(UserProfile.class, username);
@@ -125,13 +140,18 @@ public class UserProfileDAO implements IDAO<UserProfileDTO, String> {
                 em.remove(profile);
             }
             em.getTransaction().commit();
+        } finally {
+            timers.delete().recordSince(start);
         }
     }
 
     @Override
     public boolean validatePrimaryKey(String username) {
+        long start = System.nanoTime();
         try (EntityManager em = emf.createEntityManager()) {
             return em.find(UserProfile.class, username) != null;
+        } finally {
+            timers.validatePrimaryKey().recordSince(start);
         }
     }
 
@@ -148,17 +168,8 @@ public class UserProfileDAO implements IDAO<UserProfileDTO, String> {
         }
     }
 
-    // Get playlists as DTOs
+    // Get playlists as DTOs, same flat query as the playlist endpoint
     public List<PlaylistDTO> getPlaylistsByUsername(String username) {
-        try (EntityManager em = emf.createEntityManager()) {
-            TypedQuery<Playlist> q = em.createQuery(
-                    "SELECT p FROM Playlist p WHERE p.owner.username = :u",
-                    Playlist.class
-            );
-            q.setParameter("u", username);
-            return q.getResultList().stream()
-                    .map(PlaylistDTO::new)
-                    .toList();
-        }
+        return PlaylistDAO.getInstance(emf).readPlaylistsByOwner(username);
     }
 }
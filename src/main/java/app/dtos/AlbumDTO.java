@@ -2,6 +2,7 @@ package app.dtos;
 
 import app.entities.Album;
 import app.entities.Artist;
+import app.utils.Durations;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 
@@ -19,15 +20,27 @@ public class AlbumDTO {
     private Integer id;
     private String albumName;
     private LocalDate releaseDate;
+    // m:ss, derived from the songs and ignored on create/update
     private String totalDuration;
     private Integer artistId;
     private String artistName;
 
+    // Flat projection used by JPQL constructor expressions
+    public AlbumDTO(Integer id, String albumName, LocalDate releaseDate, Integer totalSeconds,
+                    Integer artistId, String artistName) {
+        this.id = id;
+        this.albumName = albumName;
+        this.releaseDate = releaseDate;
+        this.totalDuration = Durations.format(totalSeconds);
+        this.artistId = artistId;
+        this.artistName = artistName;
+    }
+
     public AlbumDTO(Album album) {
         this.id = album.getId();
         this.albumName = album.getAlbumName();
         this.releaseDate = album.getReleaseDate();
-        this.totalDuration = album.getTotalDuration();
+        this.totalDuration = Durations.format(album.getTotalSeconds());
         if (album.getArtist() != null) {
             this.artistId = album.getArtist().getId();
             this.artistName = album.getArtist().getArtistName();
@@ -39,7 +52,6 @@ public class AlbumDTO {
         album.setId(this.id != null ? this.id : 0);
         album.setAlbumName(this.albumName);
         album.setReleaseDate(this.releaseDate);
-        album.setTotalDuration(this.totalDuration);
 
         if (this.artistId != null) {
             Artist artist = new Artist();
@@ -1,6 +1,8 @@
 package app.dtos;
 
+import app.cache.ResourceVersions;
 import app.entities.Artist;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 
@@ -16,11 +18,23 @@ public class ArtistDTO {
     private Integer id;
     private String artistName;
     private String type;
+    // Sent as the ETag header
+    @JsonIgnore
+    private String etag;
+
+    // Flat projection used by JPQL constructor expressions
+    public ArtistDTO(Integer id, String artistName, String type, Long version) {
+        this.id = id;
+        this.artistName = artistName;
+        this.type = type;
+        this.etag = ResourceVersions.strong("ar", id, version);
+    }
 
     public ArtistDTO(Artist artist) {
         this.id = artist.getId();
         this.artistName = artist.getArtistName();
         this.type = artist.getType();
+        this.etag = ResourceVersions.strong("ar", id, artist.getVersion());
     }
 
     public Artist toEntity() {
@@ -1,14 +1,15 @@
 package app.dtos;
 
+import app.cache.ResourceVersions;
 import app.entities.Playlist;
-import app.entities.Song;
 import app.entities.UserProfile;
+import app.utils.Durations;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @NoArgsConstructor
 @Getter
@@ -19,25 +20,40 @@ public class PlaylistDTO {
 
     private Integer id;
     private String playListName;
+    // m:ss, derived from the songs and ignored on create/update
     private String totalDuration;
     private String ownerUsername;
-    private Set<Integer> songIds;
+    // In track order, a song may appear more than once
+    private List<Integer> songIds;
+    // Sent as the ETag header. Entry changes bump the playlist's version too
+    @JsonIgnore
+    private String etag;
+
+    // Scalar columns only, song ids are added by the DAO while grouping the joined rows
+    public PlaylistDTO(Integer id, String playListName, Integer totalSeconds, String ownerUsername, Long version) {
+        this.id = id;
+        this.playListName = playListName;
+        this.totalDuration = Durations.format(totalSeconds);
+        this.ownerUsername = ownerUsername;
+        this.songIds = new ArrayList<>();
+        this.etag = ResourceVersions.strong("p", id, version);
+    }
 
     public PlaylistDTO(Playlist playlist) {
         this.id = playlist.getId();
         this.playListName = playlist.getPlayListName();
-        this.totalDuration = playlist.getTotalDuration();
+        this.totalDuration = Durations.format(playlist.getTotalSeconds());
         this.ownerUsername = playlist.getOwner().getUsername();
-        this.songIds = playlist.getSongs().stream()
-                .map(Song::getSongId)
-                .collect(Collectors.toSet());
+        this.songIds = playlist.getEntries().stream()
+                .map(entry -> entry.getSong().getSongId())
+                .toList();
+        this.etag = ResourceVersions.strong("p", id, playlist.getVersion());
     }
 
     public Playlist toEntity() {
         Playlist playlist = new Playlist();
         playlist.setId(this.id != null ? this.id : 0);
         playlist.setPlayListName(this.playListName);
-        playlist.setTotalDuration(this.totalDuration);
 
         if (this.ownerUsername != null) {
             UserProfile owner = new UserProfile();
@@ -45,16 +61,7 @@ public class PlaylistDTO {
             playlist.setOwner(owner);
         }
 
-        if (this.songIds != null && !this.songIds.isEmpty()) {
-            Set<Song> songs = this.songIds.stream()
-                    .map(id -> {
-                        Song s = new Song();
-                        s.setSongId(id);
-                        return s;
-                    })
-                    .collect(Collectors.toSet());
-            playlist.setSongs(songs);
-        }
+        // Entries need positions and managed songs, PlaylistDAO builds them from songIds
 
         return playlist;
     }
@@ -0,0 +1,28 @@
+package app.dtos;
+
+import app.utils.Durations;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PlaylistEntryDTO {
+
+    private Long entryId;
+    // Sparse sort key, pass the last one as ?after= to read the next window
+    private Long position;
+    private Integer songId;
+    private String songName;
+    private String mainArtistName;
+    private String duration;
+
+    // JPQL projection used by PlaylistDAO.readEntries
+    public PlaylistEntryDTO(Long entryId, Long position, Integer songId, String songName,
+                            String mainArtistName, Integer durationSeconds) {
+        this(entryId, position, songId, songName, mainArtistName, Durations.format(durationSeconds));
+    }
+}
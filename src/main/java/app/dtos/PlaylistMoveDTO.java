@@ -0,0 +1,16 @@
+package app.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PlaylistMoveDTO {
+
+    // The entry to place the moved one after, null moves it to the top
+    private Long afterEntryId;
+}
@@ -0,0 +1,20 @@
+package app.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PlaylistSongsDTO {
+
+    // Request: songs to add or remove. Response: the songs that were actually added or removed
+    private List<Integer> songIds;
+    // Response only, the playlist's total after the change
+    private String totalDuration;
+}
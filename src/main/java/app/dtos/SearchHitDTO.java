@@ -0,0 +1,21 @@
+package app.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchHitDTO {
+
+    // songId, artistId or albumId depending on the list the hit is in
+    private Integer id;
+    private String name;
+    // Songs and albums only
+    private String artistName;
+    // Full-text rank plus trigram similarity, higher is better
+    private Double rank;
+}
@@ -0,0 +1,21 @@
+package app.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+public class SearchResultDTO {
+
+    private String query;
+    // Applied to each list separately, the next page is offset + limit
+    private int offset;
+    private int limit;
+    private List<SearchHitDTO> songs;
+    private List<SearchHitDTO> artists;
+    private List<SearchHitDTO> albums;
+}
@@ -1,8 +1,11 @@
 package app.dtos;
 
+import app.cache.ResourceVersions;
 import app.entities.Album;
 import app.entities.Artist;
 import app.entities.Song;
+import app.utils.Durations;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 
@@ -19,18 +22,38 @@ public class SongDTO {
     private String songName;
     private String genre;
     private String featuredArtist;
+    // m:ss, stored as seconds in Song
     private String duration;
     private Integer mainArtistId;
     private String mainArtistName;
     private Integer albumId;
     private String albumName;
+    // Sent as the ETag header, changes with the song, its main artist or its album
+    @JsonIgnore
+    private String etag;
+
+    // Flat projection used by JPQL constructor expressions, so no entity graph is loaded
+    public SongDTO(Integer songId, String songName, String genre, String featuredArtist, Integer durationSeconds,
+                   Integer mainArtistId, String mainArtistName, Integer albumId, String albumName,
+                   Long version, Long mainArtistVersion, Long albumVersion) {
+        this.songId = songId;
+        this.songName = songName;
+        this.genre = genre;
+        this.featuredArtist = featuredArtist;
+        this.duration = Durations.format(durationSeconds);
+        this.mainArtistId = mainArtistId;
+        this.mainArtistName = mainArtistName;
+        this.albumId = albumId;
+        this.albumName = albumName;
+        this.etag = ResourceVersions.strong("s", songId, version, mainArtistVersion, albumVersion);
+    }
 
     public SongDTO(Song song) {
         this.songId = song.getSongId();
         this.songName = song.getSongName();
         this.genre = song.getGenre();
         this.featuredArtist = song.getFeaturedArtist();
-        this.duration = song.getDuration();
+        this.duration = Durations.format(song.getDurationSeconds());
 
         if (song.getMainArtist() != null) {
             this.mainArtistId = song.getMainArtist().getId();
@@ -41,6 +64,11 @@ public class SongDTO {
             this.albumId = song.getAlbum().getId();
             this.albumName = song.getAlbum().getAlbumName();
         }
+
+        if (song.getMainArtist() != null && song.getAlbum() != null) {
+            this.etag = ResourceVersions.strong("s", songId, song.getVersion(),
+                    song.getMainArtist().getVersion(), song.getAlbum().getVersion());
+        }
     }
 
     public Song toEntity() {
@@ -49,7 +77,9 @@ public class SongDTO {
         song.setSongName(this.songName);
         song.setGenre(this.genre);
         song.setFeaturedArtist(this.featuredArtist);
-        song.setDuration(this.duration);
+        if (this.duration != null) {
+            song.setDurationSeconds(Durations.parse(this.duration));
+        }
 
         return song;
     }
@@ -0,0 +1,47 @@
+package app.dtos;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class SongImportResultDTO {
+
+    // Only the first errors are listed, failed still counts all of them
+    public static final int MAX_LISTED_ERRORS = 1000;
+
+    private int received;
+    private int imported;
+    private int failed;
+    private List<RowError> errors = new ArrayList<>();
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    @ToString
+    public static class RowError {
+        // 1-based position of the row in the request body
+        private int row;
+        private String message;
+    }
+
+    public void rowReceived() {
+        received++;
+    }
+
+    public void rowsImported(int count) {
+        imported += count;
+    }
+
+    public void rowFailed(int row, String message) {
+        failed++;
+        if (errors.size() < MAX_LISTED_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package app.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+public class SongPageDTO {
+
+    private List<SongDTO> songs;
+    // songId to pass as "after" for the next page, null when this was the last page
+    private Integer next;
+}
@@ -2,6 +2,9 @@ package app.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -14,11 +17,12 @@ import java.time.*;
 @Setter
 @ToString
 @Builder
-
-
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "catalog.album")
 public class Album {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "album_id_generator")
+    @SequenceGenerator(name = "album_id_generator", sequenceName = "album_seq", allocationSize = IdGeneration.ALLOCATION_SIZE)
     @Column(name = "album_id", length = 100, nullable = false)
     private int id;
 
@@ -28,8 +32,15 @@ public class Album {
     @Column(name = "release_date", length = 100, nullable = false)
     private LocalDate releaseDate;
 
-    @Column(name = "total_duration", nullable = false)
-    private String totalDuration = "0:00";
+    // Sum of the songs' seconds, kept up to date by delta in the DAOs instead of recomputed from the songs
+    @Column(name = "total_seconds", nullable = false)
+    private int totalSeconds;
+
+    // Optimistic locking and the ETags. Bulk and native updates of the row bump it themselves
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
 
 
     // Relations
@@ -45,34 +56,11 @@ public class Album {
     private Set<Song> songs = new HashSet<>();
 
 
-    public void updateTotalDuration() {
-        int totalSeconds = songs.stream()
-                .mapToInt(song -> {
-                    // If Song stores "duration" as "mm:ss"
-                    // replace with song.getDurationSeconds() if you store seconds instead
-                    String d = song.getDuration(); // e.g. "3:45"
-                    String[] parts = d.split(":");
-                    int m = Integer.parseInt(parts[0]);
-                    int s = Integer.parseInt(parts[1]);
-                    return m * 60 + s;
-                })
-                .sum();
-
-        int m = totalSeconds / 60;
-        int s = totalSeconds % 60;
-        this.totalDuration = String.format("%d:%02d", m, s);
-    }
-
-    @PrePersist
-    @PreUpdate
-    public void recalcBeforeSave() {
-        updateTotalDuration();
-    }
-
     // Convenience helper
     public void addSong(Song s) {
         songs.add(s);
         s.setAlbum(this);
+        totalSeconds += s.getDurationSeconds();
     }
 
 }
@@ -3,6 +3,9 @@ package app.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -14,10 +17,12 @@ import java.util.Set;
 @Setter
 @ToString
 @Builder
-
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "catalog.artist")
 public class Artist {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "artist_id_generator")
+    @SequenceGenerator(name = "artist_id_generator", sequenceName = "artist_seq", allocationSize = IdGeneration.ALLOCATION_SIZE)
     @Column(name = "artist_id")
     private int id;
 
@@ -26,6 +31,12 @@ public class Artist {
 
     private String type;
 
+    // Optimistic locking and the ETags. Bulk and native updates of the row bump it themselves
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
+
     @OneToMany(mappedBy = "mainArtist", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
     @Builder.Default
     @ToString.Exclude
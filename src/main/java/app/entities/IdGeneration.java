@@ -0,0 +1,15 @@
+package app.entities;
+
+/**
+ * Purpose: Shared settings for the sequence based ids of the catalog entities.
+ * Hibernate reserves ALLOCATION_SIZE ids per sequence call and hands them out in memory,
+ * so inserts no longer need a round trip each for the key and can be sent as JDBC batches.
+ * The database sequences must use the same INCREMENT BY (see V1__baseline_schema.sql).
+ */
+public final class IdGeneration {
+
+    public static final int ALLOCATION_SIZE = 50;
+
+    private IdGeneration() {
+    }
+}
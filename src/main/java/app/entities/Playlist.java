@@ -2,10 +2,12 @@ package app.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
-import java.time.Duration;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 @AllArgsConstructor
@@ -16,15 +18,23 @@ import java.util.Set;
 
 public class Playlist {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "playlist_id_generator")
+    @SequenceGenerator(name = "playlist_id_generator", sequenceName = "playlist_seq", allocationSize = IdGeneration.ALLOCATION_SIZE)
     @Column(name = "playlist_id",unique = true, nullable = false)
     private int id;
 
     @Column(name = "playlist_name")
     private String playListName;
 
-    @Column(name = "total_duration", nullable = false)
-    private String totalDuration = "0:00";
+    // Sum of the songs' seconds, changed by delta when songs are added or removed
+    @Column(name = "total_seconds", nullable = false)
+    private int totalSeconds;
+
+    // Optimistic locking and the ETags. Bulk and native updates of the row bump it themselves
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "owner_username", nullable = false,
@@ -32,35 +42,22 @@ public class Playlist {
     @ToString.Exclude
     private UserProfile owner;
 
-    @ManyToMany(fetch = FetchType.EAGER, cascade = CascadeType.PERSIST)
-    @JoinTable(name = "playlist_songs", joinColumns = {@JoinColumn(name = "playlist_id",
-            referencedColumnName = "playlist_id")},
-            inverseJoinColumns = {@JoinColumn(name = "song_id", referencedColumnName = "song_id")}
-    )
-
+    // Lazy, the total does not need the songs and a large playlist is only loaded when asked for
+    // Cached as entry ids in track order. The native writes in PlaylistDAO evict it themselves
+    @OneToMany(mappedBy = "playlist", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "catalog.playlist-songs")
+    @OrderBy("position")
     @Builder.Default
-    private Set<Song> songs = new HashSet<>();
-
+    private List<PlaylistEntry> entries = new ArrayList<>();
 
-    public void updateTotalDuration() {
-        int totalSeconds = songs.stream()
-                .mapToInt(song -> {
-                    String[] parts = song.getDuration().split(":");
-                    int minutes = Integer.parseInt(parts[0]);
-                    int seconds = Integer.parseInt(parts[1]);
-                    return minutes * 60 + seconds;
-                })
-                .sum();
-
-        int minutes = totalSeconds / 60;
-        int seconds = totalSeconds % 60;
-        this.totalDuration = String.format("%d:%02d", minutes, seconds);
-    }
 
-    @PrePersist
-    @PreUpdate
-    public void recalcDurationBeforeSave() {
-        updateTotalDuration();
+    // Appends the song after the last entry
+    public void addSong(Song song) {
+        long position = entries.isEmpty()
+                ? PlaylistEntry.POSITION_GAP
+                : entries.get(entries.size() - 1).getPosition() + PlaylistEntry.POSITION_GAP;
+        entries.add(new PlaylistEntry(null, this, song, position));
+        totalSeconds += song.getDurationSeconds();
     }
 
 }
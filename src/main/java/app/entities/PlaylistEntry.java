@@ -0,0 +1,48 @@
+package app.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+/**
+ * Purpose: One track in a playlist. Entries are ordered by position, a sparse ranking key:
+ * new entries are appended POSITION_GAP after the last one, and a move takes the midpoint between its
+ * new neighbours, so only the moved row changes. The same song may appear more than once.
+ */
+@Entity
+@Cacheable
+// With Playlist.entries cached, the entries themselves must be too, or each one is loaded by its own select
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "catalog.playlist-entry")
+@Table(name = "playlist_songs",
+        uniqueConstraints = @UniqueConstraint(name = "uk_playlist_songs_position", columnNames = {"playlist_id", "position"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PlaylistEntry {
+
+    public static final long POSITION_GAP = 1024;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "playlist_entry_id_generator")
+    @SequenceGenerator(name = "playlist_entry_id_generator", sequenceName = "playlist_entry_seq", allocationSize = IdGeneration.ALLOCATION_SIZE)
+    @Column(name = "entry_id", nullable = false)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "playlist_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_playlist_songs_playlist"))
+    @ToString.Exclude
+    private Playlist playlist;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "song_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_playlist_songs_song"))
+    @ToString.Exclude
+    private Song song;
+
+    @Column(name = "position", nullable = false)
+    private long position;
+}
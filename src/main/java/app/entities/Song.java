@@ -2,19 +2,21 @@ package app.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
-
-import java.util.HashSet;
-import java.util.Set;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 @Getter
 @Setter
 @NoArgsConstructor
 @Entity
-
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "catalog.song")
 @Table(name = "song")
 public class Song {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "song_id_generator")
+    @SequenceGenerator(name = "song_id_generator", sequenceName = "song_seq", allocationSize = IdGeneration.ALLOCATION_SIZE)
     @Column(name = "song_id", nullable = false, unique = true)
     private Integer songId;
 
@@ -27,8 +29,15 @@ public class Song {
     @Column(name = "featured_artist", nullable = true, length = 100)
     private String featuredArtist;
 
-    @Column(name = "duration", nullable = false)
-    private String duration = "0:00";
+    // Seconds, formatted as m:ss only in SongDTO
+    @Column(name = "duration_seconds", nullable = false)
+    private int durationSeconds;
+
+    // Optimistic locking and the ETags. Bulk and native updates of the row bump it themselves
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
 
 
     // Relations
@@ -45,22 +54,4 @@ public class Song {
             foreignKey = @ForeignKey(name = "fk_song_album"))
     private Album album;
 
-    @ManyToMany(mappedBy = "songs")
-    private Set<Playlist> playlists = new HashSet<>();
-
-
-    // Convert "mm:ss" → total seconds
-    public int getDurationSeconds() {
-        String[] parts = duration.split(":");
-        int minutes = Integer.parseInt(parts[0]);
-        int seconds = Integer.parseInt(parts[1]);
-        return minutes * 60 + seconds;
-    }
-
-    // Set duration from seconds
-    public void setDurationFromSeconds(int totalSeconds) {
-        int minutes = totalSeconds / 60;
-        int seconds = totalSeconds % 60;
-        this.duration = String.format("%d:%02d", minutes, seconds);
-    }
 }
@@ -0,0 +1,45 @@
+package app.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Purpose: Latency of every IDAO method, one LatencyHistogram per DAO and method. Each DAO keeps its Timers
+ * in a static field, so recording is System.nanoTime() and the histogram's atomic increments, no lookup.
+ */
+public class DaoMetrics {
+
+    public record Timers(LatencyHistogram read, LatencyHistogram readAll, LatencyHistogram create,
+                         LatencyHistogram update, LatencyHistogram delete, LatencyHistogram validatePrimaryKey) {
+
+        Map<String, LatencyHistogram> byOperation() {
+            Map<String, LatencyHistogram> operations = new LinkedHashMap<>();
+            operations.put("read", read);
+            operations.put("readAll", readAll);
+            operations.put("create", create);
+            operations.put("update", update);
+            operations.put("delete", delete);
+            operations.put("validatePrimaryKey", validatePrimaryKey);
+            return operations;
+        }
+    }
+
+    private static final Map<String, Timers> timers = new ConcurrentHashMap<>();
+
+    private DaoMetrics() {
+    }
+
+    public static Timers forDao(String dao) {
+        return timers.computeIfAbsent(dao, d -> new Timers(new LatencyHistogram(), new LatencyHistogram(),
+                new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram()));
+    }
+
+    // DAO -> method -> histogram, sorted by DAO
+    public static Map<String, Map<String, LatencyHistogram>> all() {
+        Map<String, Map<String, LatencyHistogram>> result = new TreeMap<>();
+        timers.forEach((dao, t) -> result.put(dao, t.byOperation()));
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package app.metrics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Purpose: Lock-free latency histogram with fixed exponential buckets.
+ * Recording is a handful of atomic increments, so it is cheap enough for every request.
+ */
+public class LatencyHistogram {
+
+    // Bucket upper bounds in microseconds, the extra last bucket catches everything above 10s
+    private static final long[] BOUNDS_MICROS = {
+            100, 250, 500,
+            1_000, 2_500, 5_000,
+            10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    public record Snapshot(long count, double meanMs, double p50Ms, double p90Ms, double p99Ms, double maxMs,
+                           Map<String, Long> buckets) {
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MICROS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    public void recordNanos(long nanos) {
+        counts.incrementAndGet(bucketFor(nanos / 1_000));
+        count.increment();
+        sumNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    // For a start taken with System.nanoTime()
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordMillis(long millis) {
+        recordNanos(millis * 1_000_000);
+    }
+
+    private static int bucketFor(long micros) {
+        int index = Arrays.binarySearch(BOUNDS_MICROS, micros);
+        // Not found gives -(insertion point) - 1, the insertion point is the first bound above the value
+        return index >= 0 ? index : -index - 1;
+    }
+
+    public static long[] boundsMicros() {
+        return BOUNDS_MICROS.clone();
+    }
+
+    // Per bucket (not cumulative) counts, one more than boundsMicros() for the overflow bucket
+    public long[] bucketCounts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    public Snapshot snapshot() {
+        long[] buckets = bucketCounts();
+        long total = 0;
+        for (long c : buckets) {
+            total += c;
+        }
+        double maxMs = maxNanos.get() / 1_000_000.0;
+        Map<String, Long> bucketMap = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            String label = i < BOUNDS_MICROS.length ? "le_" + BOUNDS_MICROS[i] / 1_000.0 + "ms" : "inf";
+            bucketMap.put(label, buckets[i]);
+        }
+        double meanMs = total == 0 ? 0 : sumNanos.sum() / 1_000_000.0 / total;
+        return new Snapshot(total, meanMs,
+                percentile(buckets, total, 0.50, maxMs),
+                percentile(buckets, total, 0.90, maxMs),
+                percentile(buckets, total, 0.99, maxMs),
+                maxMs, bucketMap);
+    }
+
+    // Upper bound of the bucket holding the percentile, so the value is an over-estimate by at most one bucket
+    private static double percentile(long[] buckets, long total, double quantile, double maxMs) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return i < BOUNDS_MICROS.length ? Math.min(BOUNDS_MICROS[i] / 1_000.0, maxMs) : maxMs;
+            }
+        }
+        return maxMs;
+    }
+}
@@ -0,0 +1,77 @@
+package app.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Purpose: Collects HikariCP pool metrics. Hikari instantiates this class itself
+ * from the hibernate.hikari.metricsTrackerFactory setting in HibernateConfig,
+ * so the collected numbers are kept in static fields.
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    public record Snapshot(String poolName, int total, int active, int idle, int pending, int max, int min,
+                           long timeouts,
+                           LatencyHistogram.Snapshot acquireTime,
+                           LatencyHistogram.Snapshot usageTime,
+                           LatencyHistogram.Snapshot creationTime) {
+    }
+
+    private static volatile String poolName;
+    private static volatile PoolStats poolStats;
+    private static final LatencyHistogram acquireTime = new LatencyHistogram();
+    private static final LatencyHistogram usageTime = new LatencyHistogram();
+    private static final LatencyHistogram creationTime = new LatencyHistogram();
+    private static final LongAdder timeouts = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String name, PoolStats stats) {
+        poolName = name;
+        poolStats = stats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                creationTime.recordMillis(connectionCreatedMillis);
+            }
+
+            // Time a request thread waited for a connection, the number that shows pool starvation
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireTime.recordNanos(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageTime.recordMillis(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    // Hikari refreshes PoolStats at most once a second
+    public static Snapshot snapshot() {
+        PoolStats stats = poolStats;
+        if (stats == null) {
+            return new Snapshot(null, 0, 0, 0, 0, 0, 0, timeouts.sum(),
+                    acquireTime.snapshot(), usageTime.snapshot(), creationTime.snapshot());
+        }
+        return new Snapshot(poolName,
+                stats.getTotalConnections(),
+                stats.getActiveConnections(),
+                stats.getIdleConnections(),
+                stats.getPendingThreads(),
+                stats.getMaxConnections(),
+                stats.getMinConnections(),
+                timeouts.sum(),
+                acquireTime.snapshot(),
+                usageTime.snapshot(),
+                creationTime.snapshot());
+    }
+}
@@ -0,0 +1,92 @@
+package app.metrics;
+
+import java.util.Map;
+
+/**
+ * Purpose: Renders the request, DAO, N+1 and connection pool metrics in the Prometheus text exposition format
+ * (version 0.0.4) for GET /api/metrics/prometheus. Latencies are histograms in seconds with the
+ * LatencyHistogram bucket bounds; Prometheus buckets are cumulative, the LatencyHistogram ones are not.
+ */
+public class PrometheusFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final long[] BOUNDS_MICROS = LatencyHistogram.boundsMicros();
+
+    private PrometheusFormat() {
+    }
+
+    public static String render(RequestMetrics requests, PoolMetrics.Snapshot pool) {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        Map<String, RequestMetrics.Route> routes = requests.routes();
+
+        header(out, "http_request_duration_seconds", "histogram", "Request latency by route template");
+        routes.forEach((key, route) -> histogram(out, "http_request_duration_seconds", routeLabels(key), route.latency()));
+
+        header(out, "http_requests_total", "counter", "Completed requests by route template and status class");
+        routes.forEach((key, route) -> route.statusCounts().forEach((status, count) ->
+                sample(out, "http_requests_total", routeLabels(key) + ",status=\"" + status + "\"", count)));
+
+        header(out, "http_requests_in_flight", "gauge", "Requests being handled, by route template");
+        routes.forEach((key, route) -> sample(out, "http_requests_in_flight", routeLabels(key), route.inFlight()));
+
+        header(out, "http_requests_in_flight_total", "gauge", "Requests being handled, including unmatched ones");
+        sample(out, "http_requests_in_flight_total", null, requests.inFlight());
+
+        header(out, "dao_operation_duration_seconds", "histogram", "Latency of IDAO methods");
+        DaoMetrics.all().forEach((dao, operations) -> operations.forEach((operation, histogram) ->
+                histogram(out, "dao_operation_duration_seconds",
+                        "dao=\"" + escape(dao) + "\",operation=\"" + operation + "\"", histogram)));
+
+        header(out, "hibernate_n_plus_one_total", "counter", "Sampled requests flagged as N+1, by DAO method");
+        QueryCounter.nPlusOneCounts().forEach((dao, count) ->
+                sample(out, "hibernate_n_plus_one_total", "dao=\"" + escape(dao) + "\"", count));
+
+        header(out, "db_pool_connections", "gauge", "HikariCP connections by state");
+        sample(out, "db_pool_connections", "state=\"active\"", pool.active());
+        sample(out, "db_pool_connections", "state=\"idle\"", pool.idle());
+        sample(out, "db_pool_connections", "state=\"max\"", pool.max());
+        header(out, "db_pool_pending_threads", "gauge", "Threads waiting for a connection");
+        sample(out, "db_pool_pending_threads", null, pool.pending());
+        header(out, "db_pool_timeouts_total", "counter", "Connection acquire timeouts");
+        sample(out, "db_pool_timeouts_total", null, pool.timeouts());
+        return out.toString();
+    }
+
+    // "GET /api/songs/{id}" -> method="GET",route="/api/songs/{id}"
+    private static String routeLabels(String key) {
+        int space = key.indexOf(' ');
+        return "method=\"" + key.substring(0, space) + "\",route=\"" + escape(key.substring(space + 1)) + "\"";
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] counts = histogram.bucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            cumulative += counts[i];
+            sample(out, name + "_bucket", labels + ",le=\"" + BOUNDS_MICROS[i] / 1_000_000.0 + "\"", cumulative);
+        }
+        cumulative += counts[BOUNDS_MICROS.length];
+        sample(out, name + "_bucket", labels + ",le=\"+Inf\"", cumulative);
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.sumNanos() / 1e9).append('\n');
+        // The count must match the +Inf bucket, histogram.count() is a separate adder and can be a recording ahead
+        sample(out, name + "_count", labels, cumulative);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
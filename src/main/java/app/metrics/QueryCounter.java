@@ -0,0 +1,200 @@
+package app.metrics;
+
+import app.utils.Utils;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Purpose: Counts SQL statements, entity loads and collection fetches per HTTP request, to catch the extra
+ * selects the EAGER associations cause. Hibernate instantiates this class itself as the statement inspector
+ * (hibernate.session_factory.statement_inspector in HibernateConfig), so the state is static. The counts are
+ * kept per thread between start and finish, which ApplicationConfig calls around each request; statements
+ * run on other threads (the login hashing executor) are not counted.
+ * The same statement run more than N_PLUS_ONE_THRESHOLD times in one request is flagged as an N+1, logged
+ * with the DAO method that ran it. QUERY_COUNT_SAMPLE_RATE counts every n-th request only (default 1 in
+ * dev and tests, 100 when deployed); requests that are not sampled cost one ThreadLocal read per statement.
+ */
+public class QueryCounter implements StatementInspector {
+
+    public record Counts(int statements, int entityLoads, int collectionFetches,
+                         String repeatedStatement, int repeatedCount, String repeatedBy) {
+
+        public boolean nPlusOne() {
+            return repeatedCount > threshold;
+        }
+
+        // For the X-Query-Count header and the access log
+        @Override
+        public String toString() {
+            return "statements=" + statements + " entities=" + entityLoads + " collections=" + collectionFetches;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCounter.class);
+    // Distinct statements tracked per request, a request above this is not an N+1 problem but a bigger one
+    private static final int MAX_DISTINCT_STATEMENTS = 256;
+
+    private static final int threshold = Utils.getConfigInt("N_PLUS_ONE_THRESHOLD", 5);
+    private static final int sampleRate = Math.max(1,
+            Utils.getConfigInt("QUERY_COUNT_SAMPLE_RATE", System.getenv("DEPLOYED") != null ? 100 : 1));
+    private static final AtomicLong requests = new AtomicLong();
+    private static final ThreadLocal<Request> current = new ThreadLocal<>();
+    private static final Map<String, LongAdder> nPlusOneByDao = new ConcurrentHashMap<>();
+    private static final List<BiConsumer<String, Counts>> listeners = new CopyOnWriteArrayList<>();
+
+    private static final class Request {
+        private int statements;
+        private int entityLoads;
+        private int collectionFetches;
+        private final Map<String, Integer> statementCounts = new HashMap<>();
+        private String mostRepeated;
+        private int mostRepeatedCount;
+        // The first statement over the threshold, and the DAO method that ran it
+        private String flagged;
+        private String flaggedBy;
+        // Every statement in order, only while capture runs
+        private List<String> captured;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Request request = current.get();
+        if (request != null) {
+            request.statements++;
+            if (request.captured != null) {
+                request.captured.add(sql);
+            }
+            Integer count = request.statementCounts.get(sql);
+            if (count != null || request.statementCounts.size() < MAX_DISTINCT_STATEMENTS) {
+                count = count == null ? 1 : count + 1;
+                request.statementCounts.put(sql, count);
+                if (count > request.mostRepeatedCount) {
+                    request.mostRepeated = sql;
+                    request.mostRepeatedCount = count;
+                }
+                if (count == threshold + 1 && request.flagged == null) {
+                    // The stack is only walked here, once per flagged request
+                    request.flagged = sql;
+                    request.flaggedBy = callingDao();
+                }
+            }
+        }
+        return sql;
+    }
+
+    // Entity loads and collection initializations, counted by event listeners next to the inspector
+    public static void registerListeners(SessionFactory sessionFactory) {
+        EventListenerRegistry registry = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> {
+            Request request = current.get();
+            if (request != null) {
+                request.entityLoads++;
+            }
+        });
+        registry.appendListeners(EventType.INIT_COLLECTION, (InitializeCollectionEventListener) event -> {
+            Request request = current.get();
+            if (request != null) {
+                request.collectionFetches++;
+            }
+        });
+    }
+
+    // Starts counting on this thread if the request is sampled
+    public static void start() {
+        if (requests.incrementAndGet() % sampleRate == 0) {
+            current.set(new Request());
+        } else {
+            current.remove();
+        }
+    }
+
+    // Stops counting on this thread. Null when the request was not sampled
+    public static Counts finish(String route) {
+        Request request = current.get();
+        if (request == null) {
+            return null;
+        }
+        current.remove();
+        Counts counts = request.flagged != null
+                ? new Counts(request.statements, request.entityLoads, request.collectionFetches,
+                        request.flagged, request.statementCounts.get(request.flagged), request.flaggedBy)
+                : new Counts(request.statements, request.entityLoads, request.collectionFetches,
+                        request.mostRepeated, request.mostRepeatedCount, null);
+        if (counts.nPlusOne()) {
+            String dao = counts.repeatedBy() != null ? counts.repeatedBy() : "unknown";
+            nPlusOneByDao.computeIfAbsent(dao, d -> new LongAdder()).increment();
+            logger.warn("Possible N+1: route=\"{}\" dao={} ran the same statement {} times ({}): {}",
+                    route, dao, counts.repeatedCount(), counts, counts.repeatedStatement());
+        }
+        for (BiConsumer<String, Counts> listener : listeners) {
+            listener.accept(route, counts);
+        }
+        return counts;
+    }
+
+    // Runs action on this thread and returns the SQL Hibernate sent for it, in order, with ? for the bind values.
+    // For tests that check the statements the DAOs really run, e.g. their plans. The request around it, if any,
+    // does not count them
+    public static List<String> capture(Runnable action) {
+        Request outer = current.get();
+        Request request = new Request();
+        request.captured = new ArrayList<>();
+        current.set(request);
+        try {
+            action.run();
+        } finally {
+            if (outer != null) {
+                current.set(outer);
+            } else {
+                current.remove();
+            }
+        }
+        return request.captured;
+    }
+
+    // Called with the route template and counts of every sampled request, e.g. by tests checking a budget
+    public static void addListener(BiConsumer<String, Counts> listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(BiConsumer<String, Counts> listener) {
+        listeners.remove(listener);
+    }
+
+    // Requests flagged as N+1, by DAO method
+    public static Map<String, Long> nPlusOneCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        nPlusOneByDao.forEach((dao, count) -> counts.put(dao, count.sum()));
+        return counts;
+    }
+
+    // "PlaylistDAO.readAll", the innermost DAO frame on the stack
+    private static String callingDao() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("app.daos.")
+                        || frame.getClassName().startsWith("app.security.daos."))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName())
+                .orElse(null));
+    }
+}
@@ -0,0 +1,129 @@
+package app.metrics;
+
+import io.javalin.http.Context;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Purpose: Request latency per route template ("GET /api/songs/{id}", not the raw URI, so the number of
+ * series stays fixed), requests currently in flight, and request counts by status class per route.
+ * The timer starts in a before handler and is recorded in an after handler, see ApplicationConfig.
+ * Recording is lock-free: a map lookup, atomic increments and LongAdders.
+ */
+public class RequestMetrics {
+
+    public static final class Route {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder inFlight = new LongAdder();
+        // 1xx to 5xx, index 0 for anything else
+        private final LongAdder[] statusClasses = new LongAdder[6];
+
+        private Route() {
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] = new LongAdder();
+            }
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        public long inFlight() {
+            return inFlight.sum();
+        }
+
+        // Keyed "2xx", "4xx" etc., only the classes that occurred
+        public Map<String, Long> statusCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            for (int i = 0; i < statusClasses.length; i++) {
+                long count = statusClasses[i].sum();
+                if (count > 0) {
+                    counts.put(i == 0 ? "other" : i + "xx", count);
+                }
+            }
+            return counts;
+        }
+    }
+
+    private static final String START_ATTRIBUTE = "metrics.start";
+    private static final String ROUTE_ATTRIBUTE = "metrics.route";
+    // Requests that matched no endpoint (404s, scans), kept as one series
+    private static final String UNMATCHED = "unmatched";
+
+    private static final RequestMetrics instance = new RequestMetrics();
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final LongAdder inFlight = new LongAdder();
+
+    private RequestMetrics() {
+    }
+
+    public static RequestMetrics getInstance() {
+        return instance;
+    }
+
+    // before: every request, matched or not
+    public void start(Context ctx) {
+        ctx.attribute(START_ATTRIBUTE, System.nanoTime());
+        inFlight.increment();
+    }
+
+    // beforeMatched: the endpoint is known from here on
+    public void matched(Context ctx) {
+        String key = key(ctx);
+        ctx.attribute(ROUTE_ATTRIBUTE, key);
+        route(key).inFlight.increment();
+    }
+
+    // after: runs after exception handlers too, so failed requests are counted with their status.
+    // Returns the elapsed nanoseconds, or -1 when start did not run
+    public long finish(Context ctx) {
+        Long start = ctx.attribute(START_ATTRIBUTE);
+        if (start == null) {
+            return -1;
+        }
+        ctx.attribute(START_ATTRIBUTE, null);
+        inFlight.decrement();
+        String key = ctx.attribute(ROUTE_ATTRIBUTE);
+        Route route;
+        if (key != null) {
+            route = route(key);
+            route.inFlight.decrement();
+        } else {
+            route = route(ctx.method().name() + " " + UNMATCHED);
+        }
+        long elapsed = System.nanoTime() - start;
+        route.latency.recordNanos(elapsed);
+        int statusClass = ctx.status().getCode() / 100;
+        route.statusClasses[statusClass >= 1 && statusClass <= 5 ? statusClass : 0].increment();
+        return elapsed;
+    }
+
+    // Route template of the current request, for logging
+    public static String routeOf(Context ctx) {
+        String key = ctx.attribute(ROUTE_ATTRIBUTE);
+        return key != null ? key : UNMATCHED;
+    }
+
+    public long inFlight() {
+        return inFlight.sum();
+    }
+
+    // Sorted by route, for a stable scrape output
+    public Map<String, Route> routes() {
+        return new TreeMap<>(routes);
+    }
+
+    private Route route(String key) {
+        // get first: computeIfAbsent locks the bin even when the route exists
+        Route route = routes.get(key);
+        return route != null ? route : routes.computeIfAbsent(key, k -> new Route());
+    }
+
+    private static String key(Context ctx) {
+        return ctx.method().name() + " " + ctx.endpointHandlerPath();
+    }
+}
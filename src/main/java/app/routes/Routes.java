@@ -1,7 +1,9 @@
 package app.routes;
 
 import app.routes.impl.ArtistRoutes;
+import app.routes.impl.MetricsRoutes;
 import app.routes.impl.PlaylistRoutes;
+import app.routes.impl.SearchRoutes;
 import app.routes.impl.SongRoutes;
 import io.javalin.apibuilder.EndpointGroup;
 
@@ -13,12 +15,16 @@ public class Routes {
     private final SongRoutes songRoutes = new SongRoutes();
     private final ArtistRoutes artistRoutes = new ArtistRoutes();
     private final PlaylistRoutes playlistRoutes = new PlaylistRoutes();
+    private final MetricsRoutes metricsRoutes = new MetricsRoutes();
+    private final SearchRoutes searchRoutes = new SearchRoutes();
 
     public EndpointGroup getRoutes() {
         return () -> {
             path("/songs", songRoutes.getRoutes());
             path("/artists", artistRoutes.getRoutes());
             path("/playlists", playlistRoutes.getRoutes());
+            path("/metrics", metricsRoutes.getRoutes());
+            path("/search", searchRoutes.getRoutes());
         };
     }
 }
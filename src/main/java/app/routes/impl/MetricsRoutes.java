@@ -0,0 +1,25 @@
+package app.routes.impl;
+
+import app.controllers.impl.MetricsController;
+import app.security.enums.Role;
+import io.javalin.apibuilder.EndpointGroup;
+
+import static io.javalin.apibuilder.ApiBuilder.*;
+
+public class MetricsRoutes {
+
+    private final MetricsController metricsController = new MetricsController();
+
+    public EndpointGroup getRoutes() {
+        return () -> {
+            // Get
+            get("/cache", metricsController::cache, Role.ADMIN);
+            get("/hibernate-cache", metricsController::secondLevelCache, Role.ADMIN);
+            get("/pool", metricsController::pool, Role.ADMIN);
+            get("/hashing", metricsController::hashing, Role.ADMIN);
+            get("/typeahead", metricsController::typeahead, Role.ADMIN);
+            // Open at the route level, a scraper cannot log in. The controller checks the METRICS_SCRAPE_TOKEN bearer token
+            get("/prometheus", metricsController::prometheus, Role.ANYONE);
+        };
+    }
+}
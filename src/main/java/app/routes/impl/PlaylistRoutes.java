@@ -15,18 +15,25 @@ public class PlaylistRoutes {
         return () -> {
             // Post
             post("/", playlistController::create, Role.ADMIN);
+            post("/{id}/songs", playlistController::addSongs, Role.ADMIN);
 
             // Get
             get("/", playlistController::readAll);
             get("/{id}", playlistController::read);
-            // http://localhost:7076/api/playlists/user/jonas
+            // http://localhost:7076/api/playlists/user/jonas?after=0&limit=100
             get("/user/{username}", playlistController::readPlaylistsByOwner);
+            // http://localhost:7076/api/playlists/1/songs?offset=0&limit=50
+            get("/{id}/songs", playlistController::readSongs);
 
             // Put
             put("/{id}", playlistController::update, Role.ADMIN);
+            put("/{id}/songs/{entryId}/position", playlistController::moveSong, Role.ADMIN);
 
             // Delete
             delete("/{id}", playlistController::delete, Role.ADMIN);
+            delete("/{id}/songs", playlistController::removeSongs, Role.ADMIN);
+            delete("/{id}/songs/{songId}", playlistController::removeSong, Role.ADMIN);
+            delete("/{id}/entries/{entryId}", playlistController::removeEntry, Role.ADMIN);
 
         };
     }
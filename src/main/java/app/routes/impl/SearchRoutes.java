@@ -0,0 +1,21 @@
+package app.routes.impl;
+
+import app.controllers.impl.SearchController;
+import io.javalin.apibuilder.EndpointGroup;
+
+import static io.javalin.apibuilder.ApiBuilder.*;
+
+public class SearchRoutes {
+
+    private final SearchController searchController = new SearchController();
+
+    public EndpointGroup getRoutes() {
+        return () -> {
+            // Get
+            // http://localhost:7076/api/search?q=daft pu
+            get("/", searchController::search);
+            // http://localhost:7076/api/search/typeahead?q=daft p
+            get("/typeahead", searchController::typeahead);
+        };
+    }
+}
@@ -13,6 +13,7 @@ public class SongRoutes {
         return () -> {
             // Post
             post("/", songController::create, Role.ADMIN);
+            post("/bulk", songController::importBulk, Role.ADMIN);
 
             // Get
             get("/", songController::readAll);
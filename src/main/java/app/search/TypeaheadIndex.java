@@ -0,0 +1,452 @@
+package app.search;
+
+import app.metrics.LatencyHistogram;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Purpose: In-process word prefix index over song, artist and album names, so typeahead
+ * (GET /api/search/typeahead) is answered without a database round trip.
+ * Per kind, a sorted map from each lowercased word to the sorted int[] of ids whose name contains it;
+ * a prefix lookup is a range of that map, and a query of several words intersects those ranges. A second
+ * map from each name's first word finds the names that start with the query without reading any name.
+ * Arrays are replaced, never changed, so lookups take no lock.
+ * Built on first use from a streaming scan, then kept current by the DAO write methods.
+ */
+public class TypeaheadIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TypeaheadIndex.class);
+
+    public enum Kind {SONG, ARTIST, ALBUM}
+
+    public record Stats(boolean built, long buildMillis, int songs, int artists, int albums, int words,
+                        long postings, long estimatedBytes, long estimatedBytesPerMillionTitles,
+                        LatencyHistogram.Snapshot lookupTime) {
+    }
+
+    // Ids collected for one lookup before ranking, names starting with the query first. Bounds the cost
+    // of one-letter prefixes
+    private static final int MAX_CANDIDATES = 1000;
+    private static final int STREAM_FETCH_SIZE = 5000;
+
+    private static TypeaheadIndex instance;
+
+    private volatile Map<Kind, TitleIndex> indexes = emptyIndexes();
+    private final LatencyHistogram lookupTime = new LatencyHistogram();
+    private final Object buildLock = new Object();
+    private volatile boolean built;
+    private volatile long buildMillis;
+    // Changes made by the DAOs while a build scans, replayed on the new index before it replaces the old one
+    private List<Runnable> changesDuringBuild;
+
+    private TypeaheadIndex() {
+    }
+
+    public static synchronized TypeaheadIndex getInstance() {
+        if (instance == null) {
+            instance = new TypeaheadIndex();
+        }
+        return instance;
+    }
+
+    private static Map<Kind, TitleIndex> emptyIndexes() {
+        Map<Kind, TitleIndex> indexes = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            indexes.put(kind, new TitleIndex());
+        }
+        return indexes;
+    }
+
+    public void ensureBuilt(EntityManagerFactory emf) {
+        if (!built) {
+            // Not the instance lock, the DAOs must be able to record changes while the first build scans
+            synchronized (buildLock) {
+                if (!built) {
+                    build(emf);
+                }
+            }
+        }
+    }
+
+    // Scans the names into a new index and swaps it in. Lookups keep using the old one meanwhile
+    public void build(EntityManagerFactory emf) {
+        synchronized (this) {
+            changesDuringBuild = new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        Map<Kind, TitleIndex> fresh = new EnumMap<>(Kind.class);
+        fresh.put(Kind.SONG, scan(emf, "SELECT s.songId, s.songName FROM Song s"));
+        fresh.put(Kind.ARTIST, scan(emf, "SELECT a.id, a.artistName FROM Artist a"));
+        fresh.put(Kind.ALBUM, scan(emf, "SELECT al.id, al.albumName FROM Album al"));
+        synchronized (this) {
+            indexes = fresh;
+            changesDuringBuild.forEach(Runnable::run);
+            changesDuringBuild = null;
+        }
+        buildMillis = (System.nanoTime() - start) / 1_000_000;
+        built = true;
+        Stats stats = stats();
+        logger.info("Typeahead index built in {} ms: {} songs, {} artists, {} albums, ~{} MB",
+                buildMillis, stats.songs(), stats.artists(), stats.albums(), stats.estimatedBytes() / (1024 * 1024));
+    }
+
+    private static TitleIndex scan(EntityManagerFactory emf, String jpql) {
+        Map<Integer, String> titles = new HashMap<>();
+        try (EntityManager em = emf.createEntityManager()) {
+            // PostgreSQL only honours the fetch size (server side cursor) inside a transaction
+            em.getTransaction().begin();
+            try (Stream<Object[]> rows = em.createQuery(jpql, Object[].class)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .getResultStream()) {
+                rows.forEach(r -> titles.put((Integer) r[0], (String) r[1]));
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
+        }
+        TitleIndex index = new TitleIndex();
+        index.apply(titles);
+        return index;
+    }
+
+    public void put(Kind kind, int id, String name) {
+        putAll(kind, Collections.singletonMap(id, name));
+    }
+
+    // One rewrite of each affected word's id array per call, used by the bulk import per chunk
+    public void putAll(Kind kind, Map<Integer, String> names) {
+        change(() -> indexes.get(kind).apply(names));
+    }
+
+    public void remove(Kind kind, Collection<Integer> ids) {
+        Map<Integer, String> removals = new HashMap<>();
+        ids.forEach(id -> removals.put(id, null));
+        change(() -> indexes.get(kind).apply(removals));
+    }
+
+    private synchronized void change(Runnable change) {
+        change.run();
+        if (changesDuringBuild != null) {
+            changesDuringBuild.add(change);
+        }
+    }
+
+    public String name(Kind kind, int id) {
+        return indexes.get(kind).titles.get(id);
+    }
+
+    // Ids of the names containing every word of the query, the last word as a prefix. Names starting
+    // with the query come first, then shorter names
+    public int[] lookup(Kind kind, String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<String> words = words(query);
+            return words.isEmpty() ? new int[0] : indexes.get(kind).lookup(words, String.join(" ", words), limit);
+        } finally {
+            lookupTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    public Stats stats() {
+        Map<Kind, TitleIndex> current = indexes;
+        int songs = current.get(Kind.SONG).titles.size();
+        int artists = current.get(Kind.ARTIST).titles.size();
+        int albums = current.get(Kind.ALBUM).titles.size();
+        int words = 0;
+        long postings = 0;
+        long bytes = 0;
+        for (TitleIndex index : current.values()) {
+            words += index.postings.size();
+            postings += index.postingCount();
+            bytes += index.estimatedBytes();
+        }
+        int titles = songs + artists + albums;
+        return new Stats(built, buildMillis, songs, artists, albums, words, postings,
+                bytes, titles == 0 ? 0 : bytes * 1_000_000 / titles,
+                lookupTime.snapshot());
+    }
+
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty() && !words.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static final class TitleIndex {
+        private final ConcurrentSkipListMap<String, int[]> postings = new ConcurrentSkipListMap<>();
+        // First word of each name -> ids, so every id is in exactly one array
+        private final ConcurrentSkipListMap<String, int[]> leading = new ConcurrentSkipListMap<>();
+        private final ConcurrentHashMap<Integer, String> titles = new ConcurrentHashMap<>();
+
+        // id -> new name, or null to remove the id
+        synchronized void apply(Map<Integer, String> changes) {
+            Map<String, IntList> added = new HashMap<>();
+            Map<String, IntList> removed = new HashMap<>();
+            Map<String, IntList> addedLeading = new HashMap<>();
+            Map<String, IntList> removedLeading = new HashMap<>();
+            changes.forEach((id, title) -> {
+                String old = title == null ? titles.remove(id) : titles.put(id, title);
+                if (old != null) {
+                    index(words(old), id, removed, removedLeading);
+                }
+                if (title != null) {
+                    index(words(title), id, added, addedLeading);
+                }
+            });
+            update(postings, added, removed);
+            update(leading, addedLeading, removedLeading);
+        }
+
+        private static void index(List<String> words, int id, Map<String, IntList> byWord, Map<String, IntList> byFirstWord) {
+            words.forEach(word -> byWord.computeIfAbsent(word, w -> new IntList()).add(id));
+            if (!words.isEmpty()) {
+                byFirstWord.computeIfAbsent(words.get(0), w -> new IntList()).add(id);
+            }
+        }
+
+        private static void update(ConcurrentSkipListMap<String, int[]> map, Map<String, IntList> added, Map<String, IntList> removed) {
+            Set<String> affected = new HashSet<>(added.keySet());
+            affected.addAll(removed.keySet());
+            for (String word : affected) {
+                int[] merged = merge(map.getOrDefault(word, IntList.EMPTY),
+                        added.getOrDefault(word, new IntList()).sortedDistinct(),
+                        removed.getOrDefault(word, new IntList()).sortedDistinct());
+                if (merged.length == 0) {
+                    map.remove(word);
+                } else {
+                    map.put(word, merged);
+                }
+            }
+        }
+
+        // Linear merge of sorted arrays: (base - remove) + add. A renamed title can be in both
+        private static int[] merge(int[] base, int[] add, int[] remove) {
+            int[] out = new int[base.length + add.length];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < base.length || j < add.length) {
+                int next;
+                if (j == add.length || (i < base.length && base[i] < add[j])) {
+                    next = base[i++];
+                    if (Arrays.binarySearch(remove, next) >= 0) {
+                        continue;
+                    }
+                } else if (i < base.length && base[i] == add[j]) {
+                    next = base[i++];
+                    j++;
+                } else {
+                    next = add[j++];
+                }
+                out[n++] = next;
+            }
+            return n == out.length ? out : Arrays.copyOf(out, n);
+        }
+
+        // The query's words are prefixes of words of the name. Only ids are compared until the candidates are
+        // chosen, the names are read for the ranking only
+        int[] lookup(List<String> words, String phrase, int limit) {
+            String last = words.get(words.size() - 1);
+            Set<Integer> seen = new HashSet<>();
+            List<Ranked> candidates = new ArrayList<>();
+            if (words.size() == 1) {
+                // The names whose first word starts with the query are the ones starting with it
+                collect(range(leading, last), true, null, seen, candidates);
+                collect(range(postings, last), false, null, seen, candidates);
+            } else {
+                int[] matches = matches(words.subList(0, words.size() - 1), last);
+                int[] starting = intersect(matches, leading.getOrDefault(words.get(0), IntList.EMPTY));
+                collect(List.of(starting), true, phrase, seen, candidates);
+                collect(List.of(matches), false, null, seen, candidates);
+            }
+            return candidates.stream()
+                    .sorted(Comparator.comparing((Ranked r) -> !r.startsWithQuery())
+                            .thenComparingInt(Ranked::length)
+                            .thenComparingInt(Ranked::id))
+                    .limit(limit)
+                    .mapToInt(Ranked::id)
+                    .toArray();
+        }
+
+        // Adds unseen ids until there are MAX_CANDIDATES. With a phrase, only the names starting with it
+        private void collect(Collection<int[]> ids, boolean startsWithQuery, String phrase, Set<Integer> seen, List<Ranked> candidates) {
+            for (int[] array : ids) {
+                for (int id : array) {
+                    if (candidates.size() >= MAX_CANDIDATES) {
+                        return;
+                    }
+                    String title = titles.get(id);
+                    if (title == null || (phrase != null && !startsWithWords(title, phrase)) || !seen.add(id)) {
+                        continue;
+                    }
+                    candidates.add(new Ranked(id, startsWithQuery, title.length()));
+                }
+            }
+        }
+
+        // Sorted ids of the names with a word starting with each of prefixes and one starting with last.
+        // The prefixes are intersected smallest first, then each array of last's range is checked against them
+        private int[] matches(List<String> prefixes, String last) {
+            List<int[]> sets = new ArrayList<>();
+            for (String prefix : prefixes) {
+                sets.add(union(range(postings, prefix)));
+            }
+            sets.sort(Comparator.comparingInt(a -> a.length));
+            int[] others = sets.get(0);
+            for (int i = 1; i < sets.size() && others.length > 0; i++) {
+                others = intersect(others, sets.get(i));
+            }
+            IntList matches = new IntList();
+            if (others.length > 0) {
+                for (int[] ids : range(postings, last)) {
+                    for (int id : intersect(others, ids)) {
+                        matches.add(id);
+                    }
+                }
+            }
+            return matches.sortedDistinct();
+        }
+
+        private static Collection<int[]> range(ConcurrentSkipListMap<String, int[]> map, String prefix) {
+            return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+        }
+
+        private static int[] union(Collection<int[]> arrays) {
+            if (arrays.size() == 1) {
+                return arrays.iterator().next();
+            }
+            IntList ids = new IntList();
+            for (int[] array : arrays) {
+                for (int id : array) {
+                    ids.add(id);
+                }
+            }
+            return ids.sortedDistinct();
+        }
+
+        // Ids in both sorted arrays. Walks the smaller one and binary searches the larger from the last hit on
+        private static int[] intersect(int[] a, int[] b) {
+            int[] small = a.length <= b.length ? a : b;
+            int[] large = small == a ? b : a;
+            int[] out = new int[small.length];
+            int n = 0;
+            int from = 0;
+            for (int id : small) {
+                int i = Arrays.binarySearch(large, from, large.length, id);
+                if (i >= 0) {
+                    out[n++] = id;
+                    from = i + 1;
+                } else {
+                    from = -i - 1;
+                }
+                if (from == large.length) {
+                    break;
+                }
+            }
+            return n == out.length ? out : Arrays.copyOf(out, n);
+        }
+
+        // Whether the name's words, lowercased and one space apart, start with phrase, as words() would split
+        // it, without building the words
+        private static boolean startsWithWords(String title, String phrase) {
+            int t = 0;
+            while (t < title.length() && !isWordChar(title.charAt(t))) {
+                t++;
+            }
+            for (int p = 0; p < phrase.length(); p++) {
+                char c = phrase.charAt(p);
+                if (c == ' ') {
+                    if (t == title.length() || isWordChar(title.charAt(t))) {
+                        return false;
+                    }
+                    while (t < title.length() && !isWordChar(title.charAt(t))) {
+                        t++;
+                    }
+                } else if (t == title.length() || Character.toLowerCase(title.charAt(t++)) != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // [\p{L}\p{N}] of words()
+        private static boolean isWordChar(char c) {
+            return Character.isLetter(c) || switch (Character.getType(c)) {
+                case Character.DECIMAL_DIGIT_NUMBER, Character.LETTER_NUMBER, Character.OTHER_NUMBER -> true;
+                default -> false;
+            };
+        }
+
+        long postingCount() {
+            long count = 0;
+            for (int[] ids : postings.values()) {
+                count += ids.length;
+            }
+            return count;
+        }
+
+        // Rough heap estimate for a 64-bit JVM with compressed oops and compact (Latin-1) strings:
+        // skip list node and index ~40 bytes, String 24 + array 16 + chars, int[] 16 + 4 per id,
+        // ConcurrentHashMap node 32 + boxed Integer 16 per title
+        long estimatedBytes() {
+            long bytes = 0;
+            for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+                bytes += 40 + 40 + entry.getKey().length() + 16 + 4L * entry.getValue().length;
+            }
+            for (Map.Entry<String, int[]> entry : leading.entrySet()) {
+                bytes += 40 + 40 + entry.getKey().length() + 16 + 4L * entry.getValue().length;
+            }
+            for (String title : titles.values()) {
+                bytes += 32 + 16 + 40 + title.length();
+            }
+            return bytes;
+        }
+    }
+
+    private record Ranked(int id, boolean startsWithQuery, int length) {
+    }
+
+    // Growable int array, so collecting ids does not box them
+    private static final class IntList {
+        static final int[] EMPTY = new int[0];
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] sortedDistinct() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            int[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int n = 1;
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] != sorted[n - 1]) {
+                    sorted[n++] = sorted[i];
+                }
+            }
+            return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package app.security.controllers;
+
+import app.metrics.LatencyHistogram;
+import app.security.exceptions.ApiException;
+import app.utils.Utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Purpose: Runs the BCrypt heavy login/register work off the Jetty request threads.
+ * Fixed number of threads and a bounded queue; when the queue is full the task fails with a 503
+ * instead of piling up, so a burst of logins cannot starve the catalog endpoints.
+ */
+public class PasswordHashingExecutor {
+
+    @FunctionalInterface
+    public interface HashingTask<T> {
+        T call() throws Exception;
+    }
+
+    public record Stats(int threads, int active, int queued, int queueLimit, long rejected,
+                        LatencyHistogram.Snapshot queueWait, LatencyHistogram.Snapshot taskTime) {
+    }
+
+    private static PasswordHashingExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int queueLimit;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram taskTime = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+
+    private PasswordHashingExecutor(int threads, int queueLimit) {
+        this.threads = Math.max(1, threads);
+        this.queueLimit = Math.max(1, queueLimit);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueLimit),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static synchronized PasswordHashingExecutor getInstance() {
+        if (instance == null) {
+            int defaultThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            instance = new PasswordHashingExecutor(
+                    Utils.getConfigInt("HASHING_THREADS", defaultThreads),
+                    Utils.getConfigInt("HASHING_QUEUE_LIMIT", 64));
+        }
+        return instance;
+    }
+
+    public <T> CompletableFuture<T> submit(HashingTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long submittedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                queueWait.recordNanos(startedAt - submittedAt);
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    taskTime.recordNanos(System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(new ApiException(503, "Too many logins in progress, try again shortly"));
+        }
+        return future;
+    }
+
+    public Stats stats() {
+        return new Stats(threads, executor.getActiveCount(), executor.getQueue().size(), queueLimit,
+                rejected.sum(), queueWait.snapshot(), taskTime.snapshot());
+    }
+}
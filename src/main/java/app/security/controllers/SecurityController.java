@@ -3,6 +3,7 @@ package app.security.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.nimbusds.jose.JOSEException;
+import app.cache.LruCache;
 import app.utils.Utils;
 import app.config.HibernateConfig;
 import app.security.daos.ISecurityDAO;
@@ -27,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import java.text.ParseException;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 /**
@@ -34,13 +36,29 @@ import java.util.stream.Collectors;
  * Author: Thomas Hartmann
  */
 public class SecurityController implements ISecurityController {
-    ObjectMapper objectMapper = new ObjectMapper();
+    ObjectMapper objectMapper = new Utils().getObjectMapper();
     ITokenSecurity tokenSecurity = new TokenSecurity();
     private static ISecurityDAO securityDAO;
     private static SecurityController instance;
     private static Logger logger = LoggerFactory.getLogger(SecurityController.class);
 
-    private SecurityController() { }
+    // Read once at startup instead of on every token
+    private final String issuer;
+    private final String tokenExpireTime;
+    private final String secretKey;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final PasswordHashingExecutor hashingExecutor = PasswordHashingExecutor.getInstance();
+
+    private SecurityController() {
+        this.issuer = getSecurityProperty("ISSUER");
+        this.tokenExpireTime = getSecurityProperty("TOKEN_EXPIRE_TIME");
+        this.secretKey = getSecurityProperty("SECRET_KEY");
+        this.verifiedTokenCache = new VerifiedTokenCache(tokenSecurity, secretKey, Utils.getConfigInt("TOKEN_CACHE_SIZE", 10_000));
+    }
+
+    private static String getSecurityProperty(String name) {
+        return System.getenv("DEPLOYED") != null ? System.getenv(name) : Utils.getPropertyValue(name, "config.properties");
+    }
 
     public static SecurityController getInstance() { // Singleton because we don't want multiple instances of the same class
         if (instance == null) {
@@ -50,46 +68,73 @@ public class SecurityController implements ISecurityController {
         return instance;
     }
 
+    // BCrypt.checkpw runs on the PasswordHashingExecutor, the request thread is released meanwhile
     @Override
     public Handler login() {
         return (ctx) -> {
-            ObjectNode returnObject = objectMapper.createObjectNode(); // for sending json messages back to the client
-            try {
-                UserDTO user = ctx.bodyAsClass(UserDTO.class);
-                UserDTO verifiedUser = securityDAO.getVerifiedUser(user.getUsername(), user.getPassword());
-                String token = createToken(verifiedUser);
-
-                ctx.status(200).json(returnObject
-                        .put("token", token)
-                        .put("username", verifiedUser.getUsername()));
-
-            } catch (EntityNotFoundException | ValidationException e) {
-                ctx.status(401);
-                System.out.println(e.getMessage());
-                ctx.json(returnObject.put("msg", e.getMessage()));
-            }
+            UserDTO user = ctx.bodyAsClass(UserDTO.class);
+            ctx.future(() -> hashingExecutor
+                    .submit(() -> securityDAO.getVerifiedUser(user.getUsername(), user.getPassword()))
+                    .thenAccept(verifiedUser -> {
+                        ObjectNode returnObject = objectMapper.createObjectNode(); // for sending json messages back to the client
+                        String token = createToken(verifiedUser);
+                        ctx.status(200).json(returnObject
+                                .put("token", token)
+                                .put("username", verifiedUser.getUsername()));
+                    })
+                    .exceptionally(e -> {
+                        handleHashingError(ctx, e);
+                        return null;
+                    }));
         };
     }
 
+    // BCrypt.hashpw (in the User constructor) runs on the PasswordHashingExecutor
     @Override
     public Handler register() {
         return (ctx) -> {
-            ObjectNode returnObject = objectMapper.createObjectNode();
-            try {
-                UserDTO userInput = ctx.bodyAsClass(UserDTO.class);
-                User created = securityDAO.createUser(userInput.getUsername(), userInput.getPassword());
-
-                String token = createToken(new UserDTO(created.getUsername(), Set.of("USER")));
-                ctx.status(HttpStatus.CREATED).json(returnObject
-                        .put("token", token)
-                        .put("username", created.getUsername()));
-            } catch (EntityExistsException e) {
-                ctx.status(HttpStatus.UNPROCESSABLE_CONTENT);
-                ctx.json(returnObject.put("msg", "User already exists"));
-            }
+            UserDTO userInput = ctx.bodyAsClass(UserDTO.class);
+            ctx.future(() -> hashingExecutor
+                    .submit(() -> securityDAO.createUser(userInput.getUsername(), userInput.getPassword()))
+                    .thenAccept(created -> {
+                        ObjectNode returnObject = objectMapper.createObjectNode();
+                        String token = createToken(new UserDTO(created.getUsername(), Set.of("USER")));
+                        ctx.status(HttpStatus.CREATED).json(returnObject
+                                .put("token", token)
+                                .put("username", created.getUsername()));
+                    })
+                    .exceptionally(e -> {
+                        handleHashingError(ctx, e);
+                        return null;
+                    }));
         };
     }
 
+    // Same responses as the synchronous handlers had, plus 503 when the hashing queue is full
+    private void handleHashingError(Context ctx, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        ObjectNode returnObject = objectMapper.createObjectNode();
+        if (cause instanceof EntityNotFoundException || cause instanceof ValidationException) {
+            ctx.status(401);
+            ctx.json(returnObject.put("msg", cause.getMessage()));
+        } else if (cause instanceof EntityExistsException) {
+            ctx.status(HttpStatus.UNPROCESSABLE_CONTENT);
+            ctx.json(returnObject.put("msg", "User already exists"));
+        } else if (cause instanceof ApiException apiException) {
+            logger.warn("An API exception occurred: Code: {}, Message: {}", apiException.getCode(), apiException.getMessage());
+            ctx.status(apiException.getCode());
+            ctx.json(returnObject.put("msg", apiException.getMessage()));
+        } else {
+            logger.error("Login/register failed", cause);
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR);
+            ctx.json(returnObject.put("msg", "Internal server error"));
+        }
+    }
+
+    public PasswordHashingExecutor.Stats hashingStats() {
+        return hashingExecutor.stats();
+    }
+
     @Override
     public Handler authenticate() throws UnauthorizedResponse {
 
@@ -116,7 +161,7 @@ public class SecurityController implements ISecurityController {
             if (verifiedTokenUser == null) {
                 throw new UnauthorizedResponse("Invalid User or Token");
             }
-            logger.info("User verified: " + verifiedTokenUser);
+            logger.debug("User verified: {}", verifiedTokenUser);
             ctx.attribute("user", verifiedTokenUser);
         };
     }
@@ -138,20 +183,7 @@ public class SecurityController implements ISecurityController {
     @Override
     public String createToken(UserDTO user) {
         try {
-            String ISSUER;
-            String TOKEN_EXPIRE_TIME;
-            String SECRET_KEY;
-
-            if (System.getenv("DEPLOYED") != null) {
-                ISSUER = System.getenv("ISSUER");
-                TOKEN_EXPIRE_TIME = System.getenv("TOKEN_EXPIRE_TIME");
-                SECRET_KEY = System.getenv("SECRET_KEY");
-            } else {
-                ISSUER = Utils.getPropertyValue("ISSUER", "config.properties");
-                TOKEN_EXPIRE_TIME = Utils.getPropertyValue("TOKEN_EXPIRE_TIME", "config.properties");
-                SECRET_KEY = Utils.getPropertyValue("SECRET_KEY", "config.properties");
-            }
-            return tokenSecurity.createToken(user, ISSUER, TOKEN_EXPIRE_TIME, SECRET_KEY);
+            return tokenSecurity.createToken(user, issuer, tokenExpireTime, secretKey);
         } catch (Exception e) {
             e.printStackTrace();
             throw new ApiException(500, "Could not create token");
@@ -161,15 +193,9 @@ public class SecurityController implements ISecurityController {
 
     @Override
     public UserDTO verifyToken(String token) {
-        boolean IS_DEPLOYED = (System.getenv("DEPLOYED") != null);
-        String SECRET = IS_DEPLOYED ? System.getenv("SECRET_KEY") : Utils.getPropertyValue("SECRET_KEY", "config.properties");
-
         try {
-            if (tokenSecurity.tokenIsValid(token, SECRET) && tokenSecurity.tokenNotExpired(token)) {
-                return tokenSecurity.getUserWithRolesFromToken(token);
-            } else {
-                throw new NotAuthorizedException(403, "Token is not valid");
-            }
+            // Repeat callers skip the signature check until their token expires
+            return verifiedTokenCache.verify(token);
         } catch (ParseException | JOSEException | NotAuthorizedException e) {
             e.printStackTrace();
             throw new ApiException(HttpStatus.UNAUTHORIZED.getCode(), "Unauthorized. Could not verify token");
@@ -192,6 +218,10 @@ public class SecurityController implements ISecurityController {
         };
     }
 
+    public LruCache.Stats tokenCacheStats() {
+        return verifiedTokenCache.stats();
+    }
+
     // Health check for the API. Used in deployment
     public void healthCheck(@NotNull Context ctx) {
         ctx.status(200).json("{\"msg\": \"API is up and running\"}");
@@ -0,0 +1,64 @@
+package app.security.controllers;
+
+import app.cache.LruCache;
+import app.security.exceptions.NotAuthorizedException;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.SignedJWT;
+import dk.bugelhartmann.ITokenSecurity;
+import dk.bugelhartmann.UserDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Purpose: Remembers tokens whose signature has already been verified, until they expire.
+ * Keyed by a SHA-256 hash of the token, so the cache never holds the tokens themselves.
+ */
+public class VerifiedTokenCache {
+
+    private final ITokenSecurity tokenSecurity;
+    private final String secretKey;
+    private final LruCache<String, UserDTO> verifiedTokens;
+
+    public VerifiedTokenCache(ITokenSecurity tokenSecurity, String secretKey, int maxSize) {
+        this.tokenSecurity = tokenSecurity;
+        this.secretKey = secretKey;
+        this.verifiedTokens = new LruCache<>("verified-tokens", maxSize, 0);
+    }
+
+    public UserDTO verify(String token) throws ParseException, JOSEException, NotAuthorizedException {
+        String key = hash(token);
+        UserDTO cached = verifiedTokens.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (!tokenSecurity.tokenIsValid(token, secretKey) || !tokenSecurity.tokenNotExpired(token)) {
+            throw new NotAuthorizedException(403, "Token is not valid");
+        }
+        UserDTO user = tokenSecurity.getUserWithRolesFromToken(token);
+        // Cached only for the rest of the token's lifetime, tokens without exp are verified every time
+        Date expiresAt = SignedJWT.parse(token).getJWTClaimsSet().getExpirationTime();
+        if (expiresAt != null) {
+            verifiedTokens.put(key, user, expiresAt.getTime() - System.currentTimeMillis());
+        }
+        return user;
+    }
+
+    public LruCache.Stats stats() {
+        return verifiedTokens.stats();
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package app.utils;
+
+/**
+ * Purpose: Converts between the stored integer seconds and the "m:ss" strings used in the DTOs.
+ * Entities and SQL only ever see seconds.
+ */
+public final class Durations {
+
+    private Durations() {
+    }
+
+    // 260 -> "4:20", 3725 -> "62:05"
+    public static String format(int totalSeconds) {
+        return String.format("%d:%02d", totalSeconds / 60, totalSeconds % 60);
+    }
+
+    // Accepts "m:ss", "mm:ss" and "h:mm:ss"
+    public static int parse(String duration) {
+        if (duration == null || duration.isBlank()) {
+            throw new IllegalArgumentException("Duration must be set");
+        }
+        String[] parts = duration.trim().split(":");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Duration must be m:ss, was: " + duration);
+        }
+        try {
+            int seconds = 0;
+            for (int i = 0; i < parts.length; i++) {
+                int value = Integer.parseInt(parts[i]);
+                if (value < 0 || (i > 0 && value > 59)) {
+                    throw new IllegalArgumentException("Duration must be m:ss, was: " + duration);
+                }
+                seconds = seconds * 60 + value;
+            }
+            return seconds;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Duration must be m:ss, was: " + duration);
+        }
+    }
+}
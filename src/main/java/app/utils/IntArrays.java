@@ -0,0 +1,38 @@
+package app.utils;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Purpose: A read-only List view over an int[], like Arrays.asList for objects. Lets DTOs keep ids in a
+ * primitive array (4 bytes each instead of a boxed Integer and a reference) while still serializing as a
+ * JSON array through their List getters.
+ */
+public class IntArrays {
+
+    private IntArrays() {
+    }
+
+    public static List<Integer> asList(int[] values) {
+        return new IntList(values);
+    }
+
+    private static final class IntList extends AbstractList<Integer> implements RandomAccess {
+        private final int[] values;
+
+        private IntList(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package app.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Purpose: Writes JSON responses straight to the response stream with the shared mapper's generator,
+ * where ctx.json first builds the whole body as one String. Used by the list endpoints, whose bodies
+ * can be megabytes. Compression (ApplicationConfig) applies to the stream the same way.
+ */
+public class JsonResponses {
+
+    private static final ObjectMapper mapper = new Utils().getObjectMapper();
+    // ObjectWriter resolves the root serializer once, per type instead of per response
+    private static final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    private JsonResponses() {
+    }
+
+    // A JSON array written element by element, the status must be set before
+    public static <T> void array(Context ctx, Collection<? extends T> items, Class<T> elementType) {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        try (SequenceWriter sequence = writer(elementType).writeValuesAsArray(ctx.outputStream())) {
+            sequence.writeAll(items);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static <T> void object(Context ctx, T value, Class<T> type) {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        try (OutputStream out = ctx.outputStream()) {
+            writer(type).writeValue(out, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ObjectWriter writer(Class<?> type) {
+        return writers.computeIfAbsent(type, mapper::writerFor);
+    }
+}
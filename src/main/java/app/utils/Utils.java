@@ -1,9 +1,10 @@
 package app.utils;
 
-import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import app.security.exceptions.ApiException;
 import io.javalin.http.Context;
 
@@ -15,6 +16,10 @@ import java.util.Properties;
 
 
 public class Utils {
+    private static Properties configProperties;
+    // Thread-safe once configured, and serializers are cached per mapper, so every caller shares this one
+    private static final ObjectMapper objectMapper = createObjectMapper();
+
     public static void main(String[] args) {
         System.out.println(getPropertyValue("db.name", "properties-from-pom.properties"));
     }
@@ -37,11 +42,58 @@ public class Utils {
         }
     }
 
+    // Optional settings with a default: system property, then environment variable, then config.properties
+    public static String getConfigValue(String propName, String defaultValue) {
+        String value = System.getProperty(propName);
+        if (value == null) {
+            value = System.getenv(propName);
+        }
+        if (value == null) {
+            value = getConfigProperties().getProperty(propName);
+        }
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public static int getConfigInt(String propName, int defaultValue) {
+        return Integer.parseInt(getConfigValue(propName, String.valueOf(defaultValue)));
+    }
+
+    public static long getConfigLong(String propName, long defaultValue) {
+        return Long.parseLong(getConfigValue(propName, String.valueOf(defaultValue)));
+    }
+
+    public static boolean getConfigBoolean(String propName, boolean defaultValue) {
+        return Boolean.parseBoolean(getConfigValue(propName, String.valueOf(defaultValue)));
+    }
+
+    // config.properties is optional when deployed, so a missing file just means no overrides
+    private static synchronized Properties getConfigProperties() {
+        if (configProperties == null) {
+            Properties prop = new Properties();
+            try (InputStream is = Utils.class.getClassLoader().getResourceAsStream("config.properties")) {
+                if (is != null) {
+                    prop.load(is);
+                }
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            configProperties = prop;
+        }
+        return configProperties;
+    }
+
+    // The mapper Javalin uses for ctx.json and ctx.bodyAsClass (ApplicationConfig), do not reconfigure it
     public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    private static ObjectMapper createObjectMapper() {
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false); // Ignore unknown properties in JSON
         objectMapper.registerModule(new JavaTimeModule()); // Serialize and deserialize java.time objects
-        objectMapper.writer(new DefaultPrettyPrinter());
+        objectMapper.registerModule(new BlackbirdModule()); // Generated getters/setters instead of reflection
+        // Streamed lists flush when the generator's buffer is full, not after every element
+        objectMapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
         return objectMapper;
     }
 
@@ -49,7 +101,6 @@ public class Utils {
         Map<String, String> msgMap = new HashMap<>();
         msgMap.put(property, message);  // Put the message in the map
         msgMap.put("status", String.valueOf(ctx.status()));  // Put the status in the map
-        ObjectMapper objectMapper = new ObjectMapper();
         try {
             return objectMapper.writeValueAsString(msgMap);  // Convert the map to JSON
         } catch (Exception e) {
@@ -0,0 +1,94 @@
+-- The schema as mapped by the entities at the time migrations were introduced.
+-- A non-empty schema without Flyway history, e.g. one created earlier by hbm2ddl, is refused (see SchemaMigrations);
+-- drop it and let this migration recreate it.
+-- Sequence increments must equal IdGeneration.ALLOCATION_SIZE.
+
+CREATE SEQUENCE artist_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE album_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE song_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE playlist_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE playlist_entry_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE artist
+(
+    artist_id   integer      NOT NULL,
+    artist_name varchar(100) NOT NULL,
+    type        varchar(255),
+    PRIMARY KEY (artist_id)
+);
+
+CREATE TABLE album
+(
+    album_id      integer      NOT NULL,
+    album_name    varchar(100) NOT NULL,
+    release_date  date         NOT NULL,
+    total_seconds integer      NOT NULL,
+    artist_id     integer      NOT NULL,
+    PRIMARY KEY (album_id),
+    CONSTRAINT fk_album_artist FOREIGN KEY (artist_id) REFERENCES artist
+);
+
+CREATE TABLE song
+(
+    song_id          integer      NOT NULL,
+    song_name        varchar(255) NOT NULL,
+    genre            varchar(255) NOT NULL,
+    featured_artist  varchar(100),
+    duration_seconds integer      NOT NULL,
+    main_artist_id   integer      NOT NULL,
+    album_id         integer      NOT NULL,
+    PRIMARY KEY (song_id),
+    CONSTRAINT fk_song_main_artist FOREIGN KEY (main_artist_id) REFERENCES artist,
+    CONSTRAINT fk_song_album FOREIGN KEY (album_id) REFERENCES album
+);
+
+CREATE TABLE users
+(
+    username varchar(25)  NOT NULL,
+    password varchar(255) NOT NULL,
+    PRIMARY KEY (username)
+);
+
+CREATE TABLE roles
+(
+    name varchar(20) NOT NULL,
+    PRIMARY KEY (name)
+);
+
+CREATE TABLE user_roles
+(
+    user_name varchar(25) NOT NULL,
+    role_name varchar(20) NOT NULL,
+    PRIMARY KEY (user_name, role_name),
+    CONSTRAINT fk_user_roles_user FOREIGN KEY (user_name) REFERENCES users,
+    CONSTRAINT fk_user_roles_role FOREIGN KEY (role_name) REFERENCES roles
+);
+
+CREATE TABLE user_profile
+(
+    username varchar(25) NOT NULL,
+    PRIMARY KEY (username),
+    CONSTRAINT fk_profile_user FOREIGN KEY (username) REFERENCES users
+);
+
+CREATE TABLE playlist
+(
+    playlist_id    integer     NOT NULL,
+    playlist_name  varchar(255),
+    total_seconds  integer     NOT NULL,
+    owner_username varchar(25) NOT NULL,
+    PRIMARY KEY (playlist_id),
+    CONSTRAINT fk_playlist_owner FOREIGN KEY (owner_username) REFERENCES user_profile
+);
+
+CREATE TABLE playlist_songs
+(
+    entry_id    bigint  NOT NULL,
+    playlist_id integer NOT NULL,
+    song_id     integer NOT NULL,
+    position    bigint  NOT NULL,
+    PRIMARY KEY (entry_id),
+    CONSTRAINT uk_playlist_songs_position UNIQUE (playlist_id, position),
+    CONSTRAINT fk_playlist_songs_playlist FOREIGN KEY (playlist_id) REFERENCES playlist,
+    CONSTRAINT fk_playlist_songs_song FOREIGN KEY (song_id) REFERENCES song
+);
@@ -0,0 +1,21 @@
+-- Indexes for the query shapes the DAOs issue. Primary keys and uk_playlist_songs_position
+-- (playlist_id, position) already cover the lookups by id and the ordered playlist reads.
+-- Checked by daos.QueryPlanTest, which fails when one of these queries plans a seq scan.
+
+-- SongDAO.create and SongImporter: lower(a.artistName) = lower(:n)
+CREATE INDEX IF NOT EXISTS ix_artist_lower_name ON artist (lower(artist_name));
+
+-- SongDAO.create and SongImporter: lower(al.albumName) = lower(:n) AND al.artist.id = :aid.
+-- The leading artist_id also serves ArtistDAO.readAlbumsByArtistId
+CREATE INDEX IF NOT EXISTS ix_album_artist_lower_name ON album (artist_id, lower(album_name));
+
+-- PlaylistDAO.readPlaylistsByOwner and UserProfile.playlists: owner_username = :u.
+-- Covering, the playlist columns of the projection are read from the index
+CREATE INDEX IF NOT EXISTS ix_playlist_owner ON playlist (owner_username) INCLUDE (playlist_name, total_seconds);
+
+-- SongDAO.delete and the playlist totals update: playlist_songs WHERE song_id = :id, grouped by playlist_id
+CREATE INDEX IF NOT EXISTS ix_playlist_songs_song ON playlist_songs (song_id) INCLUDE (playlist_id);
+
+-- Foreign keys of song, so deleting an album or artist does not scan every song
+CREATE INDEX IF NOT EXISTS ix_song_album ON song (album_id);
+CREATE INDEX IF NOT EXISTS ix_song_main_artist ON song (main_artist_id);
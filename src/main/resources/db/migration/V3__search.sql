@@ -0,0 +1,22 @@
+-- Search (SearchDAO, GET /api/search?q=). The tsvector columns are generated, so PostgreSQL keeps them
+-- in sync with every insert and update, including the native and bulk write paths. They are not mapped
+-- by the entities. 'simple' does no stemming or stop words, titles are in many languages.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE song ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', song_name || ' ' || genre)) STORED;
+ALTER TABLE artist ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', artist_name)) STORED;
+ALTER TABLE album ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', album_name)) STORED;
+
+-- Full-text and word prefix matches (word:*)
+CREATE INDEX ix_song_search ON song USING gin (search_vector);
+CREATE INDEX ix_artist_search ON artist USING gin (search_vector);
+CREATE INDEX ix_album_search ON album USING gin (search_vector);
+
+-- Misspelled and partial-word matches, lower(name) % lower(:q)
+CREATE INDEX ix_song_name_trgm ON song USING gin (lower(song_name) gin_trgm_ops);
+CREATE INDEX ix_artist_name_trgm ON artist USING gin (lower(artist_name) gin_trgm_ops);
+CREATE INDEX ix_album_name_trgm ON album USING gin (lower(album_name) gin_trgm_ops);
@@ -0,0 +1,8 @@
+-- Row versions for optimistic locking (@Version) and the ETags of GET /songs/{id}, /artists/{id} and
+-- /playlists/{id}. JPA updates increment them; the bulk and native updates of the totals and of
+-- playlist_songs increment them in the same statement.
+
+ALTER TABLE song ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE artist ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE album ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE playlist ADD COLUMN version bigint NOT NULL DEFAULT 0;
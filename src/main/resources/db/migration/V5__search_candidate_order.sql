@@ -0,0 +1,11 @@
+-- SearchDAO takes the matches nearest to the query first, ORDER BY lower(name) <-> :q, before it caps and
+-- ranks them. GIN cannot return rows in distance order, GiST can, and it serves lower(name) % :q as well,
+-- so it replaces the GIN trigram indexes from V3.
+
+DROP INDEX ix_song_name_trgm;
+DROP INDEX ix_artist_name_trgm;
+DROP INDEX ix_album_name_trgm;
+
+CREATE INDEX ix_song_name_trgm ON song USING gist (lower(song_name) gist_trgm_ops);
+CREATE INDEX ix_artist_name_trgm ON artist USING gist (lower(artist_name) gist_trgm_ops);
+CREATE INDEX ix_album_name_trgm ON album USING gist (lower(album_name) gist_trgm_ops);
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import app.security.controllers.SecurityController;
+import app.security.enums.Role;
+import dk.bugelhartmann.UserDTO;
+import io.javalin.security.RouteRole;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Constructor;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SecurityController.authorize, run by AccessController for every request to a protected route.
+ * The controller is created through its private constructor: getInstance also opens the
+ * EntityManagerFactory, which authorize does not use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizeBenchmark {
+
+    private SecurityController securityController;
+    private UserDTO admin;
+    private UserDTO user;
+    private Set<RouteRole> adminOnly;
+    private Set<RouteRole> userOrAdmin;
+
+    @Setup
+    public void setup() throws Exception {
+        Constructor<SecurityController> constructor = SecurityController.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        securityController = constructor.newInstance();
+        admin = new UserDTO("admin", Set.of("USER", "ADMIN"));
+        user = new UserDTO("user", Set.of("user"));
+        adminOnly = Set.of(Role.ADMIN);
+        userOrAdmin = Set.of(Role.USER, Role.ADMIN);
+    }
+
+    @Benchmark
+    public boolean adminOnAdminRoute() {
+        return securityController.authorize(admin, adminOnly);
+    }
+
+    @Benchmark
+    public boolean userOnAdminRoute() {
+        return securityController.authorize(user, adminOnly);
+    }
+
+    @Benchmark
+    public boolean userOnUserRoute() {
+        return securityController.authorize(user, userOrAdmin);
+    }
+}
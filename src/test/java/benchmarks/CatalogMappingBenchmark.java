@@ -0,0 +1,99 @@
+package benchmarks;
+
+import app.dtos.PlaylistDTO;
+import app.dtos.SongDTO;
+import app.entities.Album;
+import app.entities.Artist;
+import app.entities.Playlist;
+import app.entities.Song;
+import app.entities.UserProfile;
+import app.utils.Durations;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request CPU cost of mapping entities to DTOs and of the duration math, without a database.
+ * playlistToDto includes collecting songIds from the entries; playlistAddSongs is Playlist.addSong, which keeps
+ * totalSeconds as a running sum (it replaced recomputing the total from every song). The durations are stored as
+ * seconds and only formatted and parsed at the DTO boundary, see Durations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogMappingBenchmark {
+
+    @Param({"10", "1000"})
+    public int playlistSize;
+
+    private Song song;
+    private Song[] songs;
+    private Playlist playlist;
+    private int seconds;
+
+    @Setup
+    public void setup() {
+        Artist artist = Artist.builder().id(1).artistName("Daft Punk").type("Electronic music duo").build();
+        Album album = Album.builder().id(1).albumName("Discovery").releaseDate(LocalDate.of(2001, 3, 12))
+                .totalSeconds(3660).artist(artist).build();
+        songs = new Song[playlistSize];
+        for (int i = 0; i < playlistSize; i++) {
+            Song s = new Song();
+            s.setSongId(i + 1);
+            s.setSongName("Song " + (i + 1));
+            s.setGenre("Electronic");
+            s.setFeaturedArtist("No featured artist");
+            s.setDurationSeconds(180 + i % 120);
+            s.setMainArtist(artist);
+            s.setAlbum(album);
+            songs[i] = s;
+        }
+        song = songs[0];
+        playlist = newPlaylist();
+        for (Song s : songs) {
+            playlist.addSong(s);
+        }
+        seconds = 3725;
+    }
+
+    private static Playlist newPlaylist() {
+        return Playlist.builder()
+                .id(1)
+                .playListName("Benchmark")
+                .owner(UserProfile.builder().username("benchmark").build())
+                .build();
+    }
+
+    @Benchmark
+    public SongDTO songToDto() {
+        return new SongDTO(song);
+    }
+
+    @Benchmark
+    public PlaylistDTO playlistToDto() {
+        return new PlaylistDTO(playlist);
+    }
+
+    @Benchmark
+    public int playlistAddSongs() {
+        Playlist p = newPlaylist();
+        for (Song s : songs) {
+            p.addSong(s);
+        }
+        return p.getTotalSeconds();
+    }
+
+    @Benchmark
+    public String formatDuration() {
+        return Durations.format(seconds);
+    }
+
+    @Benchmark
+    public int parseDuration() {
+        return Durations.parse("62:05");
+    }
+}
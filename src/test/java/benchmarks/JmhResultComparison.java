@@ -0,0 +1,82 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON results (-rf json), e.g. target/jmh-result.json of this commit against one kept from
+ * an earlier commit, and fails when a benchmark got slower than the threshold. Throughput (thrpt) is better
+ * when higher, the time modes when lower. Benchmarks in only one of the files are listed but not judged.
+ * Run by the benchmark profile after the benchmarks:
+ *   mvn -Pbenchmark -DskipTests verify -Dbenchmark=CatalogMapping -Dbaseline=jmh-baseline.json
+ * Without -Dbaseline it does nothing. -Dregression=0.10 (the default) allows 10% slower.
+ * The percentage printed per benchmark is how much slower it got, negative is faster.
+ */
+public class JmhResultComparison {
+
+    // <current result> <allowed regression, e.g. 0.10> [<baseline result>], the baseline last as it may be empty
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args[2].isBlank()) {
+            System.out.println("No baseline given (-Dbaseline=<jmh result json>), nothing to compare");
+            return;
+        }
+        double threshold = Double.parseDouble(args[1]);
+        Map<String, JsonNode> current = read(new File(args[0]));
+        Map<String, JsonNode> baseline = read(new File(args[2]));
+
+        int regressions = 0;
+        Map<String, JsonNode> all = new TreeMap<>(baseline);
+        all.putAll(current);
+        for (String key : all.keySet()) {
+            JsonNode now = current.get(key);
+            JsonNode before = baseline.get(key);
+            if (now == null || before == null) {
+                System.out.printf("%-90s %s%n", key, now == null ? "only in baseline" : "new");
+                continue;
+            }
+            double scoreNow = now.at("/primaryMetric/score").asDouble();
+            double scoreBefore = before.at("/primaryMetric/score").asDouble();
+            boolean higherIsBetter = "thrpt".equals(now.get("mode").asText());
+            // Positive = slower
+            double change = higherIsBetter ? (scoreBefore - scoreNow) / scoreBefore : (scoreNow - scoreBefore) / scoreBefore;
+            boolean regressed = change > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %12.3f -> %12.3f %s  %+6.1f%% %s%n", key, scoreBefore, scoreNow,
+                    now.at("/primaryMetric/scoreUnit").asText(), change * 100, regressed ? "REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) more than %.0f%% slower than the baseline%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+    }
+
+    // Keyed by benchmark, mode and params, e.g. "benchmarks.CatalogMappingBenchmark.playlistToDto avgt {playlistSize=1000}"
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText())
+                    .append(' ').append(result.get("mode").asText());
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Map<String, String> sorted = new TreeMap<>();
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    sorted.put(field.getKey(), field.getValue().asText());
+                }
+                key.append(' ').append(sorted);
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,121 @@
+package benchmarks;
+
+import app.entities.IdGeneration;
+import jakarta.persistence.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts 100k song rows through Hibernate with IDENTITY ids (the old mapping) and with the pooled
+ * sequence ids the entities use now. Both use the same batch size, only the id strategy differs.
+ * The two entities below mirror the song columns in their own tables, so nothing else interferes.
+ * Needs Docker (Testcontainers), run with:
+ *   mvn -Pbenchmark -DskipTests verify -Dbenchmark=SongInsertBenchmark
+ * Rows per second = 100000 / reported seconds per op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SongInsertBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int ROWS_PER_TRANSACTION = 1_000;
+
+    @Param({"IDENTITY", "SEQUENCE"})
+    public String idStrategy;
+
+    private SessionFactory sessionFactory;
+
+    @Entity(name = "IdentitySongRow")
+    @Table(name = "bench_identity_song")
+    public static class IdentitySongRow {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        public Integer songId;
+        public String songName;
+        public String genre;
+        public String duration;
+    }
+
+    @Entity(name = "SequenceSongRow")
+    @Table(name = "bench_sequence_song")
+    public static class SequenceSongRow {
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bench_song_id_generator")
+        @SequenceGenerator(name = "bench_song_id_generator", sequenceName = "bench_song_seq",
+                allocationSize = IdGeneration.ALLOCATION_SIZE)
+        public Integer songId;
+        public String songName;
+        public String genre;
+        public String duration;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.connection.driver_class", "org.testcontainers.jdbc.ContainerDatabaseDriver");
+        configuration.setProperty("hibernate.connection.url", "jdbc:tc:postgresql:15.3-alpine3.18:///bench_db?TC_DAEMON=true");
+        configuration.setProperty("hibernate.connection.username", "postgres");
+        configuration.setProperty("hibernate.connection.password", "postgres");
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        // Same write settings as HibernateConfig
+        configuration.setProperty("hibernate.jdbc.batch_size", "50");
+        configuration.setProperty("hibernate.order_inserts", "true");
+        configuration.setProperty("hibernate.id.optimizer.pooled.preferred", "pooled-lo");
+        configuration.addAnnotatedClass(IdentitySongRow.class);
+        configuration.addAnnotatedClass(SequenceSongRow.class);
+        sessionFactory = configuration.buildSessionFactory();
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        sessionFactory.inTransaction(session -> session
+                .createNativeMutationQuery("TRUNCATE bench_identity_song, bench_sequence_song")
+                .executeUpdate());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public int insert100kSongs() {
+        boolean identity = "IDENTITY".equals(idStrategy);
+        int inserted = 0;
+        while (inserted < ROWS) {
+            int from = inserted;
+            sessionFactory.inTransaction(session -> {
+                for (int i = from; i < from + ROWS_PER_TRANSACTION; i++) {
+                    session.persist(identity ? identityRow(i) : sequenceRow(i));
+                }
+            });
+            inserted += ROWS_PER_TRANSACTION;
+        }
+        return inserted;
+    }
+
+    private static IdentitySongRow identityRow(int i) {
+        IdentitySongRow row = new IdentitySongRow();
+        row.songName = "Song " + i;
+        row.genre = "Benchmark";
+        row.duration = "3:" + String.format("%02d", i % 60);
+        return row;
+    }
+
+    private static SequenceSongRow sequenceRow(int i) {
+        SequenceSongRow row = new SequenceSongRow();
+        row.songName = "Song " + i;
+        row.genre = "Benchmark";
+        row.duration = "3:" + String.format("%02d", i % 60);
+        return row;
+    }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import app.dtos.SongDTO;
+import app.dtos.SongPageDTO;
+import app.utils.Utils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializing a 10k-song payload, the size of a large /api/songs page.
+ * plainMapperToString is the old path (Javalin's ctx.json: a reflection-based mapper building one String),
+ * sharedMapperToString is the same with the Blackbird mapper from Utils, sharedMapperStreamed writes element by
+ * element to the response stream (JsonResponses), streamedGzip adds the gzip that compression applies on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SongSerializationBenchmark {
+
+    private static final int SONGS = 10_000;
+
+    private ObjectMapper plainMapper;
+    private ObjectMapper sharedMapper;
+    private ObjectWriter songWriter;
+    private SongPageDTO page;
+
+    @Setup
+    public void setup() {
+        plainMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        sharedMapper = new Utils().getObjectMapper();
+        songWriter = sharedMapper.writerFor(SongDTO.class);
+        List<SongDTO> songs = new ArrayList<>(SONGS);
+        for (int i = 1; i <= SONGS; i++) {
+            songs.add(new SongDTO(i, "Song " + i, "Electronic", "No featured artist", 180 + i % 120,
+                    i % 500, "Artist " + i % 500, i % 2500, "Album " + i % 2500, 0L, 0L, 0L));
+        }
+        page = new SongPageDTO(songs, SONGS);
+    }
+
+    @Benchmark
+    public byte[] plainMapperToString() throws IOException {
+        return plainMapper.writeValueAsString(page).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] sharedMapperToString() throws IOException {
+        return sharedMapper.writeValueAsString(page).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int sharedMapperStreamed() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        writeStreamed(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public int streamedGzip() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+            writeStreamed(gzip);
+        }
+        return compressed.size();
+    }
+
+    private void writeStreamed(OutputStream out) throws IOException {
+        try (SequenceWriter sequence = songWriter.writeValuesAsArray(out)) {
+            sequence.writeAll(page.getSongs());
+        }
+    }
+
+    // Discards the bytes, so only the serialization is measured
+    private static final class CountingOutputStream extends OutputStream {
+        private int count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
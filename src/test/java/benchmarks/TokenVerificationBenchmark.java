@@ -0,0 +1,55 @@
+package benchmarks;
+
+import app.security.controllers.VerifiedTokenCache;
+import app.utils.Utils;
+import dk.bugelhartmann.ITokenSecurity;
+import dk.bugelhartmann.TokenSecurity;
+import dk.bugelhartmann.UserDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token verification done by AccessController for every protected request.
+ * uncachedWithConfigRead is the old path (read SECRET_KEY from config.properties, verify signature, parse claims),
+ * cachedRepeatCaller is the same caller hitting the VerifiedTokenCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenVerificationBenchmark {
+
+    private ITokenSecurity tokenSecurity;
+    private VerifiedTokenCache verifiedTokenCache;
+    private String secretKey;
+    private String token;
+
+    @Setup
+    public void setup() throws Exception {
+        tokenSecurity = new TokenSecurity();
+        secretKey = Utils.getPropertyValue("SECRET_KEY", "config.properties");
+        // TokenSecurity takes the expiry in milliseconds
+        token = tokenSecurity.createToken(new UserDTO("benchmark", Set.of("USER")), "phonyfy-benchmark", "3600000", secretKey);
+        verifiedTokenCache = new VerifiedTokenCache(tokenSecurity, secretKey, 10_000);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UserDTO uncachedWithConfigRead() throws Exception {
+        String secret = Utils.getPropertyValue("SECRET_KEY", "config.properties");
+        if (tokenSecurity.tokenIsValid(token, secret) && tokenSecurity.tokenNotExpired(token)) {
+            return tokenSecurity.getUserWithRolesFromToken(token);
+        }
+        throw new IllegalStateException("Token is not valid");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UserDTO cachedRepeatCaller() throws Exception {
+        return verifiedTokenCache.verify(token);
+    }
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import app.search.TypeaheadIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TypeaheadIndex lookups over one million generated song titles.
+ * Setup prints the measured heap growth next to the index's own estimate (also served at /api/metrics/typeahead).
+ * commonPrefix hits the candidate cap, twoWords is a typical narrowing query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TypeaheadIndexBenchmark {
+
+    private static final int TITLES = 1_000_000;
+    private static final int CHUNK = 10_000;
+    private static final String[] WORDS = {
+            "love", "night", "heart", "fire", "dream", "summer", "harder", "better", "faster", "stronger",
+            "blue", "city", "dance", "light", "river", "shadow", "golden", "electric", "midnight", "forever"};
+
+    private final TypeaheadIndex index = TypeaheadIndex.getInstance();
+
+    @Setup
+    public void setup() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+
+        Random random = new Random(42);
+        Map<Integer, String> chunk = new HashMap<>();
+        for (int id = 1; id <= TITLES; id++) {
+            // Two to four common words plus a unique one, roughly the shape of real titles
+            StringBuilder title = new StringBuilder();
+            for (int w = 2 + random.nextInt(3); w > 0; w--) {
+                title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            chunk.put(id, title.append("track").append(id).toString());
+            if (chunk.size() == CHUNK) {
+                index.putAll(TypeaheadIndex.Kind.SONG, chunk);
+                chunk = new HashMap<>();
+            }
+        }
+        index.putAll(TypeaheadIndex.Kind.SONG, chunk);
+
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("%nTypeahead: %d titles, measured ~%d MB, estimated %d MB per million titles%n",
+                TITLES, (after - before) / (1024 * 1024),
+                index.stats().estimatedBytesPerMillionTitles() / (1024 * 1024));
+    }
+
+    @Benchmark
+    public int[] commonPrefix() {
+        return index.lookup(TypeaheadIndex.Kind.SONG, "l", 10);
+    }
+
+    @Benchmark
+    public int[] twoWords() {
+        return index.lookup(TypeaheadIndex.Kind.SONG, "harder bett", 10);
+    }
+
+    @Benchmark
+    public int[] uniqueWord() {
+        return index.lookup(TypeaheadIndex.Kind.SONG, "track99999", 10);
+    }
+}
@@ -0,0 +1,207 @@
+package daos;
+
+import app.config.HibernateConfig;
+import app.config.Populate;
+import app.config.SyntheticCatalogGenerator;
+import app.daos.impl.ArtistDAO;
+import app.daos.impl.PlaylistDAO;
+import app.daos.impl.SongDAO;
+import app.dtos.SongDTO;
+import app.metrics.QueryCounter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.junit.jupiter.api.*;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Calls the DAO methods against a generated catalog large enough for the planner to prefer an index whenever
+ * one fits, captures the SQL Hibernate sent for them (QueryCounter.capture), binds the values the call used and
+ * EXPLAINs it. Fails when a statement still plans a seq scan on the table it filters. The indexes they rely on
+ * are in db/migration/V2__query_indexes.sql.
+ * Runs after PhonyfyApiTest (junit-platform.properties), as the generated rows shift the ids that test expects.
+ */
+@Order(2)
+public class QueryPlanTest {
+
+    private static EntityManagerFactory emf;
+    private static int artistId;
+    private static String albumName;
+    private static int playlistId;
+    private static int rareSongId;
+
+    @BeforeAll
+    static void seed() {
+        HibernateConfig.setTest(true);
+        emf = HibernateConfig.getEntityManagerFactory();
+        if (!Populate.isSeeded(emf)) {
+            Populate.seed(emf);
+        }
+        // 1000 artists, 5000 albums, 50000 songs, 2000 users with 6000 playlists of 5-60 songs
+        new SyntheticCatalogGenerator(new SyntheticCatalogGenerator.Settings(
+                1_000, 5, 10, 2_000, 3, 5, 60, 1.0, 4, 1_000, true, 42)).generate(emf);
+
+        execute("ANALYZE");
+        artistId = queryInt("SELECT artist_id FROM artist WHERE artist_name = 'Artist 10'");
+        albumName = queryString("SELECT min(album_name) FROM album WHERE artist_id = " + artistId);
+        playlistId = queryInt("SELECT min(playlist_id) FROM playlist WHERE owner_username = 'synthetic_10'");
+        // The least used song, a popular one is in so many playlists that a seq scan can be the right plan
+        rareSongId = queryInt("SELECT song_id FROM playlist_songs GROUP BY song_id ORDER BY count(*), song_id LIMIT 1");
+    }
+
+    @Test
+    void artistAndAlbumByName() {
+        SongDTO song = new SongDTO();
+        song.setSongName("Query Plan Song");
+        song.setGenre("Pop");
+        song.setDuration("3:20");
+        song.setMainArtistName("Artist 10");
+        song.setAlbumName(albumName);
+        List<String> statements = QueryCounter.capture(() -> SongDAO.getInstance(emf).create(song));
+
+        // setMaxResults(1) is bound as the last value
+        assertNoSeqScan("artist", only(statements, sql -> sql.contains("from artist") && sql.contains("lower(")),
+                "Artist 10", 1);
+        assertNoSeqScan("album", only(statements, sql -> sql.contains("from album") && sql.contains("lower(")),
+                albumName, artistId, 1);
+    }
+
+    @Test
+    void albumsByArtist() {
+        List<String> statements = QueryCounter.capture(() -> ArtistDAO.getInstance(emf).readAlbumsByArtistId(artistId));
+        assertNoSeqScan("album", only(statements, sql -> sql.contains("from album")), artistId);
+    }
+
+    @Test
+    void playlistsByOwner() {
+        // A page of playlists, then their entries
+        List<String> statements = QueryCounter.capture(() -> PlaylistDAO.getInstance(emf).readPlaylistsByOwner("synthetic_10", 0, 100));
+        int last = queryInt("SELECT max(playlist_id) FROM (SELECT playlist_id FROM playlist WHERE owner_username = 'synthetic_10' " +
+                "ORDER BY playlist_id LIMIT 100) page");
+        assertNoSeqScan("playlist", only(statements, sql -> sql.contains("owner_username") && !sql.contains("playlist_songs")),
+                "synthetic_10", 0, 100);
+        String pairs = only(statements, sql -> sql.contains("playlist_songs"));
+        assertNoSeqScan("playlist", pairs, "synthetic_10", 0, last);
+        assertNoSeqScan("playlist_songs", pairs, "synthetic_10", 0, last);
+    }
+
+    @Test
+    void playlistEntryWindow() {
+        List<String> statements = QueryCounter.capture(() -> PlaylistDAO.getInstance(emf).readEntries(playlistId, 0, 100, null));
+        // An offset of 0 is left out, the limit is bound after the filter values
+        assertNoSeqScan("playlist_songs", only(statements, sql -> sql.contains("playlist_songs")), playlistId, 0, 100);
+    }
+
+    @Test
+    void playlistEntriesBySong() {
+        int seconds = queryInt("SELECT duration_seconds FROM song WHERE song_id = " + rareSongId);
+        List<String> statements = QueryCounter.capture(() -> SongDAO.getInstance(emf).delete(rareSongId));
+        assertNoSeqScan("playlist_songs", only(statements, sql -> sql.contains("delete from playlist_songs")),
+                rareSongId, seconds);
+    }
+
+    // The one captured statement that matches, compared in lower case
+    private static String only(List<String> statements, Predicate<String> matches) {
+        List<String> found = statements.stream().filter(sql -> matches.test(sql.toLowerCase(Locale.ROOT))).toList();
+        assertThat("Statements:\n" + String.join("\n", statements), found, hasSize(1));
+        return found.get(0);
+    }
+
+    // Plan lines read "Seq Scan on <table> <alias>  (cost=...", the trailing space keeps playlist from matching playlist_songs
+    private static void assertNoSeqScan(String table, String sql, Object... values) {
+        String bound = bind(sql, values);
+        List<String> plan = explain(bound);
+        assertThat("Plan for " + bound + "\n" + String.join("\n", plan),
+                plan, not(hasItem(containsString("Seq Scan on " + table + " "))));
+    }
+
+    // Replaces the ? placeholders with the values as literals, in order. Placeholders in quotes and comments stay
+    private static String bind(String sql, Object... values) {
+        StringBuilder out = new StringBuilder(sql.length() + 16 * values.length);
+        int next = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || (c == '/' && sql.startsWith("/*", i))) {
+                int end = c == '\'' ? sql.indexOf('\'', i + 1) : sql.indexOf("*/", i + 2) + 1;
+                out.append(sql, i, end + 1);
+                i = end;
+            } else if (c == '?') {
+                assertThat("More placeholders than values in " + sql, next, lessThan(values.length));
+                out.append(literal(values[next++]));
+            } else {
+                out.append(c);
+            }
+        }
+        assertThat("Fewer placeholders than values in " + sql, next, equalTo(values.length));
+        return out.toString();
+    }
+
+    private static String literal(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    // EXPLAIN without ANALYZE, so the DELETE and UPDATE only get planned
+    private static List<String> explain(String sql) {
+        try (EntityManager em = emf.createEntityManager()) {
+            return em.unwrap(Session.class).doReturningWork(conn -> {
+                List<String> lines = new ArrayList<>();
+                try (Statement statement = conn.createStatement();
+                     ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+                return lines;
+            });
+        }
+    }
+
+    private static int queryInt(String sql) {
+        try (EntityManager em = emf.createEntityManager()) {
+            return em.unwrap(Session.class).doReturningWork(conn -> {
+                try (Statement statement = conn.createStatement();
+                     ResultSet rs = statement.executeQuery(sql)) {
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            });
+        }
+    }
+
+    private static String queryString(String sql) {
+        try (EntityManager em = emf.createEntityManager()) {
+            return em.unwrap(Session.class).doReturningWork(conn -> {
+                try (Statement statement = conn.createStatement();
+                     ResultSet rs = statement.executeQuery(sql)) {
+                    rs.next();
+                    return rs.getString(1);
+                }
+            });
+        }
+    }
+
+    private static void execute(String sql) {
+        try (EntityManager em = emf.createEntityManager()) {
+            em.unwrap(Session.class).doWork(conn -> {
+                try (Statement statement = conn.createStatement()) {
+                    statement.execute(sql);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package daos;
+
+import app.config.HibernateConfig;
+import app.config.Populate;
+import app.daos.impl.SearchDAO;
+import app.dtos.SearchHitDTO;
+import app.search.TypeaheadIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Searches a catalog where more than 1000 songs, the candidate cap of SearchDAO and TypeaheadIndex, match the
+ * query and the best match was inserted after all of them, so a cap that takes the first matches it finds
+ * would leave it out.
+ * Runs after QueryPlanTest (junit-platform.properties), as the songs it adds match that test's queries too.
+ */
+@Order(3)
+public class SearchDAOTest {
+
+    private static final int DECOYS = SearchDAO.MAX_CANDIDATES + 500;
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void seed() {
+        HibernateConfig.setTest(true);
+        emf = HibernateConfig.getEntityManagerFactory();
+        if (!Populate.isSeeded(emf)) {
+            Populate.seed(emf);
+        }
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            // "Decoy Midnight n" all contain the word midnight, and come before the exact title in the table and by id
+            em.createNativeQuery("INSERT INTO song (song_id, song_name, genre, duration_seconds, main_artist_id, album_id) " +
+                            "SELECT nextval('song_seq'), 'Decoy Midnight ' || g, 'Pop', 200, al.artist_id, al.album_id " +
+                            "FROM generate_series(1, :decoys) AS g, (SELECT artist_id, album_id FROM album ORDER BY album_id LIMIT 1) al")
+                    .setParameter("decoys", DECOYS)
+                    .executeUpdate();
+            em.createNativeQuery("INSERT INTO song (song_id, song_name, genre, duration_seconds, main_artist_id, album_id) " +
+                            "SELECT nextval('song_seq'), 'Midnight', 'Pop', 200, artist_id, album_id FROM album ORDER BY album_id LIMIT 1")
+                    .executeUpdate();
+            em.createNativeQuery("ANALYZE song").executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    @Test
+    void bestMatchAfterTheFirstThousandMatchesRanksFirst() {
+        List<SearchHitDTO> songs = SearchDAO.getInstance(emf).search("midnight", 0, 10).getSongs();
+        assertThat(songs, not(empty()));
+        assertThat(songs.get(0).getName(), equalTo("Midnight"));
+    }
+
+    @Test
+    void lastPageReachesTheCap() {
+        List<SearchHitDTO> songs = SearchDAO.getInstance(emf).search("midnight", SearchDAO.MAX_CANDIDATES - 10, 10).getSongs();
+        assertThat(songs, hasSize(10));
+        assertThat(songs, everyItem(hasProperty("name", containsStringIgnoringCase("midnight"))));
+    }
+
+    @Test
+    void typeaheadRanksTheNameStartingWithTheQueryFirst() {
+        TypeaheadIndex typeahead = TypeaheadIndex.getInstance();
+        // The rows were inserted around the DAOs, which keep the index current
+        typeahead.build(emf);
+        for (String query : List.of("midnight", "midn")) {
+            int[] ids = typeahead.lookup(TypeaheadIndex.Kind.SONG, query, 5);
+            assertThat(query, ids.length, greaterThan(0));
+            assertThat(query, typeahead.name(TypeaheadIndex.Kind.SONG, ids[0]), equalTo("Midnight"));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package loadtest;
+
+import app.metrics.LatencyHistogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop load: a fixed number of clients each send a request, wait for the answer and send the next one,
+ * until the duration is up. Latencies go into a LatencyHistogram.
+ */
+public class LoadGenerator {
+
+    public record Result(String name, int clients, long requests, long errors, double requestsPerSecond,
+                         LatencyHistogram.Snapshot latency) {
+    }
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // pathForRequest gets a running request number, so each client can spread over different ids
+    public Result run(String name, String baseUrl, IntFunction<String> pathForRequest, int clients, Duration duration)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int clientNumber = c;
+            Thread thread = new Thread(() -> {
+                int i = clientNumber;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + pathForRequest.apply(i)))
+                            .timeout(Duration.ofSeconds(30))
+                            .GET()
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors.increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                    latency.recordNanos(System.nanoTime() - start);
+                    requests.increment();
+                    i += clients;
+                }
+            }, "load-client-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = duration.toMillis() / 1000.0;
+        return new Result(name, clients, requests.sum(), errors.sum(), requests.sum() / seconds, latency.snapshot());
+    }
+}
@@ -0,0 +1,252 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A weighted mix of catalog reads, playlist edits and logins against a running server, each request recorded
+ * in an HdrHistogram per route (in microseconds). Clients run closed-loop by default. With a target rate the
+ * requests are scheduled and latency is measured from the scheduled start, so a stalled server shows up as
+ * the queueing its clients would see instead of as fewer, fast samples (coordinated omission).
+ */
+public class MixedWorkload {
+
+    // What the workload can pick from, read from the seeded database
+    public record Catalog(int minSongId, int maxSongId, int minArtistId, int maxArtistId,
+                          int minPlaylistId, int maxPlaylistId, int syntheticUsers) {
+    }
+
+    public record RouteResult(String route, long requests, long errors, double requestsPerSecond, Histogram latency) {
+    }
+
+    private record Operation(String route, int weight, Action action) {
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        HttpRequest next(Client client);
+    }
+
+    private static final String[] QUERIES = {"song 1", "song 42", "artist 7", "album 3", "daft", "disc"};
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private final Catalog catalog;
+    private final String adminToken;
+    private final List<Operation> operations = new ArrayList<>();
+    private int totalWeight;
+
+    public MixedWorkload(String baseUrl, Catalog catalog, String adminToken) {
+        this.baseUrl = baseUrl;
+        this.catalog = catalog;
+        this.adminToken = adminToken;
+
+        // Catalog reads
+        add("GET /songs/{id}", 30, c -> get("/songs/" + c.songId()));
+        add("GET /songs?limit=100", 10, c -> get("/songs?limit=100&after=" + (c.songId() - 1)));
+        add("GET /artists/{id}/albums", 10, c -> get("/artists/" + c.artistId() + "/albums"));
+        add("GET /playlists/user/{username}", 15, c -> get("/playlists/user/" + c.username()));
+        add("GET /playlists/{id}/songs", 10, c -> get("/playlists/" + c.playlistId() + "/songs?limit=50"));
+        add("GET /search/typeahead", 10, c -> get("/search/typeahead?q=" + c.query().replace(" ", "%20")));
+        // Playlist edits, the removes undo this client's earlier adds so playlists do not keep growing
+        add("POST /playlists/{id}/songs", 6, this::addSong);
+        add("DELETE /playlists/{id}/songs/{songId}", 5, this::removeSong);
+        // BCrypt makes these the most expensive requests by far
+        add("POST /auth/login", 4, c -> post("/auth/login", Map.of("username", c.username(), "password", "synthetic")));
+    }
+
+    private void add(String route, int weight, Action action) {
+        operations.add(new Operation(route, weight, action));
+        totalWeight += weight;
+    }
+
+    // requestsPerSecond 0 runs closed-loop, otherwise the rate is spread evenly over the clients
+    public List<RouteResult> run(int clients, Duration duration, double requestsPerSecond) throws InterruptedException {
+        Map<String, ConcurrentHistogram> latencies = new LinkedHashMap<>();
+        Map<String, LongAdder> errors = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            // 3 significant digits, auto-resizing so a slow outlier is not dropped
+            latencies.put(operation.route(), new ConcurrentHistogram(3));
+            errors.put(operation.route(), new LongAdder());
+        }
+        long intervalNanos = requestsPerSecond > 0 ? (long) (clients * 1_000_000_000L / requestsPerSecond) : 0;
+        long startedMillis = System.currentTimeMillis();
+        long started = System.nanoTime();
+        long deadline = started + duration.toNanos();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Client client = new Client(new SplittableRandom(c * 0x9E3779B97F4A7C15L + 1));
+            // Staggered, so scheduled clients do not all fire at once
+            long firstStart = started + (intervalNanos > 0 ? intervalNanos * c / clients : 0);
+            Thread thread = new Thread(() -> {
+                long intended = firstStart;
+                while (intended < deadline) {
+                    if (intervalNanos > 0) {
+                        long wait = intended - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                    }
+                    Operation operation = pick(client.random);
+                    long start = intervalNanos > 0 ? intended : System.nanoTime();
+                    if (!send(operation.action().next(client), client)) {
+                        errors.get(operation.route()).increment();
+                    }
+                    long end = System.nanoTime();
+                    latencies.get(operation.route()).recordValue(Math.max(0, (end - start) / 1_000));
+                    intended = intervalNanos > 0 ? intended + intervalNanos : end;
+                }
+            }, "load-client-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        List<RouteResult> results = new ArrayList<>();
+        for (Operation operation : operations) {
+            Histogram histogram = latencies.get(operation.route());
+            histogram.setTag(operation.route());
+            histogram.setStartTimeStamp(startedMillis);
+            histogram.setEndTimeStamp(System.currentTimeMillis());
+            results.add(new RouteResult(operation.route(), histogram.getTotalCount(),
+                    errors.get(operation.route()).sum(), histogram.getTotalCount() / seconds, histogram));
+        }
+        return results;
+    }
+
+    private Operation pick(SplittableRandom random) {
+        int n = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            n -= operation.weight();
+            if (n < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("Weights do not add up");
+    }
+
+    private boolean send(HttpRequest request, Client client) {
+        try {
+            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 400) {
+                // The add did not happen, so there is nothing to remove later
+                client.forgetLastAdd(request);
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            client.forgetLastAdd(request);
+            return false;
+        }
+    }
+
+    private HttpRequest addSong(Client client) {
+        int playlistId = client.playlistId();
+        int songId = client.songId();
+        HttpRequest request = admin(URI.create(baseUrl + "/playlists/" + playlistId + "/songs"))
+                .POST(json(Map.of("songIds", List.of(songId))))
+                .build();
+        client.added.push(new int[]{playlistId, songId});
+        client.lastAdd = request;
+        return request;
+    }
+
+    private HttpRequest removeSong(Client client) {
+        int[] added = client.added.poll();
+        if (added == null) {
+            return addSong(client);
+        }
+        return admin(URI.create(baseUrl + "/playlists/" + added[0] + "/songs/" + added[1])).DELETE().build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String path, Object body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(json(body))
+                .build();
+    }
+
+    private HttpRequest.Builder admin(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + adminToken)
+                .header("Content-Type", "application/json");
+    }
+
+    private HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // One per client thread, so nothing here is shared
+    private final class Client {
+        private final SplittableRandom random;
+        private final Deque<int[]> added = new ArrayDeque<>();
+        private HttpRequest lastAdd;
+
+        private Client(SplittableRandom random) {
+            this.random = random;
+        }
+
+        int songId() {
+            return random.nextInt(catalog.minSongId(), catalog.maxSongId() + 1);
+        }
+
+        int artistId() {
+            return random.nextInt(catalog.minArtistId(), catalog.maxArtistId() + 1);
+        }
+
+        int playlistId() {
+            return random.nextInt(catalog.minPlaylistId(), catalog.maxPlaylistId() + 1);
+        }
+
+        String username() {
+            return "synthetic_" + random.nextInt(catalog.syntheticUsers());
+        }
+
+        String query() {
+            return QUERIES[random.nextInt(QUERIES.length)];
+        }
+
+        void forgetLastAdd(HttpRequest request) {
+            if (request == lastAdd) {
+                added.poll();
+            }
+        }
+    }
+}
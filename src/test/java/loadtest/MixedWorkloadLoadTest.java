@@ -0,0 +1,150 @@
+package loadtest;
+
+import app.config.ApplicationConfig;
+import app.config.HibernateConfig;
+import app.config.Populate;
+import app.config.SyntheticCatalogGenerator;
+import app.search.TypeaheadIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * End-to-end load test: starts the server against the Testcontainers PostgreSQL used by the API tests, seeds it
+ * with the sample data plus a synthetic catalog, and drives a mixed workload (see MixedWorkload) through it.
+ * Prints a latency table per route and writes the HdrHistograms to target/loadtest: a .hgrm percentile
+ * distribution per route, and loadtest.hlog with all routes, which HdrHistogram's tools can plot and compare
+ * between runs. Needs Docker:
+ *   mvn test-compile exec:java -Dexec.mainClass=loadtest.MixedWorkloadLoadTest -Dexec.classpathScope=test
+ * Optional system properties: loadtest.scale (artists, default 1000; each gets 5 albums of 10 songs, and there
+ * are 2 users per artist with 3 playlists each), loadtest.clients (default 50), loadtest.seconds (default 60),
+ * loadtest.warmupSeconds (default 15), loadtest.rate (total requests per second, default 0 = closed loop).
+ */
+public class MixedWorkloadLoadTest {
+
+    private static final int PORT = 7077;
+    private static final File REPORT_DIR = new File("target/loadtest");
+
+    public static void main(String[] args) throws Exception {
+        int scale = Integer.getInteger("loadtest.scale", 1_000);
+        int clients = Integer.getInteger("loadtest.clients", 50);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.seconds", 60));
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("loadtest.warmupSeconds", 15));
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "0"));
+
+        HibernateConfig.setTest(true);
+        EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
+        if (!Populate.isSeeded(emf)) {
+            Populate.seed(emf);
+            new SyntheticCatalogGenerator(new SyntheticCatalogGenerator.Settings(scale, 5, 10, scale * 2, 3, 5, 40,
+                    1.0, Runtime.getRuntime().availableProcessors(), 1_000, true, 42)).generate(emf);
+        }
+        TypeaheadIndex.getInstance().ensureBuilt(emf);
+        MixedWorkload.Catalog catalog = readCatalog(emf);
+
+        Javalin app = ApplicationConfig.startServer(PORT);
+        try {
+            String baseUrl = "http://localhost:" + PORT + "/api";
+            MixedWorkload workload = new MixedWorkload(baseUrl, catalog, login(baseUrl));
+            System.out.printf("Warming up for %ds...%n", warmup.toSeconds());
+            workload.run(clients, warmup, rate);
+            System.out.printf("Measuring %d clients for %ds (%s)...%n", clients, duration.toSeconds(),
+                    rate > 0 ? rate + " req/s" : "closed loop");
+            List<MixedWorkload.RouteResult> results = workload.run(clients, duration, rate);
+            print(results);
+            write(results);
+        } finally {
+            ApplicationConfig.stopServer(app);
+        }
+        System.exit(0);
+    }
+
+    private static MixedWorkload.Catalog readCatalog(EntityManagerFactory emf) {
+        try (EntityManager em = emf.createEntityManager()) {
+            Object[] songs = (Object[]) em.createNativeQuery("SELECT min(song_id), max(song_id) FROM song").getSingleResult();
+            Object[] artists = (Object[]) em.createNativeQuery("SELECT min(artist_id), max(artist_id) FROM artist").getSingleResult();
+            Object[] playlists = (Object[]) em.createNativeQuery("SELECT min(playlist_id), max(playlist_id) FROM playlist").getSingleResult();
+            long users = ((Number) em.createNativeQuery("SELECT count(*) FROM users WHERE username LIKE 'synthetic\\_%'")
+                    .getSingleResult()).longValue();
+            return new MixedWorkload.Catalog(
+                    ((Number) songs[0]).intValue(), ((Number) songs[1]).intValue(),
+                    ((Number) artists[0]).intValue(), ((Number) artists[1]).intValue(),
+                    ((Number) playlists[0]).intValue(), ((Number) playlists[1]).intValue(),
+                    (int) users);
+        }
+    }
+
+    // Playlist edits need an admin token, from the sample data
+    private static String login(String baseUrl) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"asger\",\"password\":\"asgerpw\"}"))
+                .build();
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Admin login failed: " + response.statusCode() + " " + response.body());
+        }
+        return new ObjectMapper().readTree(response.body()).get("token").asText();
+    }
+
+    private static void print(List<MixedWorkload.RouteResult> results) {
+        System.out.printf("%-40s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "route", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long requests = 0;
+        long errors = 0;
+        double throughput = 0;
+        for (MixedWorkload.RouteResult r : results) {
+            Histogram h = r.latency();
+            System.out.printf("%-40s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    r.route(), r.requests(), r.errors(), r.requestsPerSecond(),
+                    ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)), ms(h.getValueAtPercentile(99)),
+                    ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+            requests += r.requests();
+            errors += r.errors();
+            throughput += r.requestsPerSecond();
+        }
+        System.out.printf("%-40s %9d %7d %9.1f%n", "total", requests, errors, throughput);
+    }
+
+    private static void write(List<MixedWorkload.RouteResult> results) throws IOException {
+        Files.createDirectories(REPORT_DIR.toPath());
+        try (PrintStream log = new PrintStream(new File(REPORT_DIR, "loadtest.hlog"))) {
+            HistogramLogWriter writer = new HistogramLogWriter(log);
+            writer.outputLogFormatVersion();
+            writer.outputLegend();
+            for (MixedWorkload.RouteResult r : results) {
+                writer.outputIntervalHistogram(r.latency());
+                // Values are microseconds, the distribution is printed in milliseconds
+                Path file = REPORT_DIR.toPath().resolve(fileName(r.route()) + ".hgrm");
+                try (PrintStream out = new PrintStream(file.toFile())) {
+                    r.latency().outputPercentileDistribution(out, 1_000.0);
+                }
+            }
+        }
+        System.out.println("Histograms written to " + REPORT_DIR.getAbsolutePath());
+    }
+
+    // "GET /playlists/{id}/songs" -> "GET_playlists_id_songs"
+    private static String fileName(String route) {
+        return route.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("_+$", "");
+    }
+
+    private static double ms(long micros) {
+        return micros / 1_000.0;
+    }
+}
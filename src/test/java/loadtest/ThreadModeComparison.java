@@ -0,0 +1,68 @@
+package loadtest;
+
+import app.config.ApplicationConfig;
+import app.config.HibernateConfig;
+import app.config.Populate;
+import io.javalin.Javalin;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares Jetty's platform thread pool with VIRTUAL_THREADS=true on /api/songs/{id} and
+ * /api/playlists/user/{username}, against the Testcontainers database used by the API tests.
+ * Needs Docker and Java 21:
+ *   mvn test-compile exec:java -Dexec.mainClass=loadtest.ThreadModeComparison -Dexec.classpathScope=test
+ * Optional system properties: loadtest.clients (default 200), loadtest.seconds (default 20).
+ */
+public class ThreadModeComparison {
+
+    private static final int PORT = 7077;
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("loadtest.clients", 200);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.seconds", 20));
+
+        HibernateConfig.setTest(true);
+        Populate.seed(HibernateConfig.getEntityManagerFactory());
+
+        List<LoadGenerator.Result> results = new ArrayList<>();
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            // ApplicationConfig reads the setting when the server starts
+            System.setProperty("VIRTUAL_THREADS", String.valueOf(virtualThreads));
+            String mode = virtualThreads ? "virtual" : "platform";
+            Javalin app = ApplicationConfig.startServer(PORT);
+            try {
+                results.addAll(runScenarios(mode, clients, duration));
+            } finally {
+                ApplicationConfig.stopServer(app);
+            }
+        }
+
+        System.out.printf("%-30s %8s %10s %8s %10s %9s %9s %9s %9s%n",
+                "scenario", "clients", "requests", "errors", "req/s", "mean ms", "p50 ms", "p99 ms", "max ms");
+        for (LoadGenerator.Result r : results) {
+            System.out.printf("%-30s %8d %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    r.name(), r.clients(), r.requests(), r.errors(), r.requestsPerSecond(),
+                    r.latency().meanMs(), r.latency().p50Ms(), r.latency().p99Ms(), r.latency().maxMs());
+        }
+        System.exit(0);
+    }
+
+    private static List<LoadGenerator.Result> runScenarios(String mode, int clients, Duration duration) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator();
+        String baseUrl = "http://localhost:" + PORT + "/api";
+        String[] usernames = {"jonas", "asger"};
+
+        // Short warmup so JIT and the connection pool are not part of the measurement
+        generator.run("warmup", baseUrl, i -> "/songs/" + (i % 10 + 1), 20, Duration.ofSeconds(3));
+
+        List<LoadGenerator.Result> results = new ArrayList<>();
+        results.add(generator.run(mode + " /songs/{id}", baseUrl,
+                i -> "/songs/" + (i % 10 + 1), clients, duration));
+        results.add(generator.run(mode + " /playlists/user/{username}", baseUrl,
+                i -> "/playlists/user/" + usernames[i % usernames.length], clients, duration));
+        return results;
+    }
+}
@@ -8,21 +8,35 @@ import io.javalin.Javalin;
 import io.restassured.RestAssured;
 import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 
+@Order(1)
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@ExtendWith(StatementBudgetExtension.class)
 public class PhonyfyApiTest {
 
+    private static final String SCRAPE_TOKEN = "test-scrape-token";
+
     private static Javalin app;
     private static String adminToken;
 
     @BeforeAll
     static void setup() {
         HibernateConfig.setTest(true);
+        System.setProperty("METRICS_SCRAPE_TOKEN", SCRAPE_TOKEN);
 
         ApplicationConfig.startServer(7076);
         RestAssured.baseURI = "http://localhost";
@@ -55,6 +69,25 @@ public class PhonyfyApiTest {
                 .body("songs.size()", greaterThan(0));
     }
 
+    @Test
+    @Order(1)
+    void getSongsPage() {
+        int next = given()
+                .when().get("/songs?limit=5")
+                .then()
+                .statusCode(200)
+                .body("songs.size()", equalTo(5))
+                .body("next", equalTo(5))
+                .extract()
+                .path("next");
+
+        given()
+                .when().get("/songs?limit=5&after=" + next)
+                .then()
+                .statusCode(200)
+                .body("songs[0].songId", equalTo(6));
+    }
+
     @Test
     @Order(2)
     void getSongById() {
@@ -137,7 +170,7 @@ public class PhonyfyApiTest {
                 .body("albumName", equalTo("Rest Assured Album"))
                 .body("mainArtistName", equalTo("Daft Punk"))
                 .body("genre", equalTo("REST Assured Genre"))
-                .body("duration", equalTo("04:20"))
+                .body("duration", equalTo("4:20"))
                 .body("songId", notNullValue());
 
     }
@@ -213,4 +246,431 @@ public class PhonyfyApiTest {
                 .statusCode(204);
     }
 
+    @Test
+    @Order(11)
+    void artistRenameInvalidatesCachedSongs() {
+        // Warm the catalog cache
+        given().when().get("/songs/1").then().statusCode(200).body("mainArtistName", equalTo("Daft Punk"));
+
+        renameArtist(1, "Daft Punk (Renamed)");
+        given().when().get("/songs/1").then().statusCode(200).body("mainArtistName", equalTo("Daft Punk (Renamed)"));
+
+        renameArtist(1, "Daft Punk");
+        given().when().get("/songs/1").then().statusCode(200).body("mainArtistName", equalTo("Daft Punk"));
+    }
+
+    @Test
+    @Order(12)
+    void bulkImportSongsReportsFailedRows() {
+        // NDJSON, the second row has an unknown artist and must not stop the other two
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/x-ndjson")
+                .body("""
+                        {"songName": "Bulk One", "albumName": "discovery", "mainArtistName": "daft punk", "genre": "House", "duration": "3:10"}
+                        {"songName": "Bulk Two", "albumName": "Discovery", "mainArtistName": "Nobody", "genre": "House", "duration": "3:20"}
+                        {"songName": "Bulk Three", "albumName": "Hybrid Theory", "mainArtistName": "Linkin Park", "genre": "Rock", "duration": "3:30"}
+                        """)
+                .when()
+                .post("/songs/bulk?chunkSize=2")
+                .then()
+                .statusCode(200)
+                .body("received", equalTo(3))
+                .body("imported", equalTo(2))
+                .body("failed", equalTo(1))
+                .body("errors[0].row", equalTo(2));
+    }
+
+    @Test
+    @Order(13)
+    void addAndRemovePlaylistSongs() {
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("{\"songIds\": [1, 2]}")
+                .when()
+                .post("/playlists/{id}/songs", 1)
+                .then()
+                .statusCode(200)
+                .body("totalDuration", notNullValue());
+        given().when().get("/playlists/{id}", 1).then().statusCode(200).body("songIds", hasItems(1, 2));
+
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .when()
+                .delete("/playlists/{id}/songs/{songId}", 1, 1)
+                .then()
+                .statusCode(200)
+                .body("songIds", hasItem(1));
+        given().when().get("/playlists/{id}", 1).then().statusCode(200).body("songIds", not(hasItem(1)));
+    }
+
+    @Test
+    @Order(14)
+    void readPlaylistWindowAndMoveEntry() {
+        List<Integer> entryIds = given().when().get("/playlists/{id}/songs?offset=0&limit=100", 1)
+                .then()
+                .statusCode(200)
+                .extract().jsonPath().getList("entryId", Integer.class);
+        assertThat(entryIds.size(), greaterThanOrEqualTo(2));
+        given().when().get("/playlists/{id}/songs?offset=1&limit=1", 1)
+                .then()
+                .statusCode(200)
+                .body("entryId", contains(entryIds.get(1)));
+
+        int last = entryIds.get(entryIds.size() - 1);
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("{\"afterEntryId\": null}")
+                .when()
+                .put("/playlists/{id}/songs/{entryId}/position", 1, last)
+                .then()
+                .statusCode(204);
+        given().when().get("/playlists/{id}/songs?limit=1", 1)
+                .then()
+                .statusCode(200)
+                .body("entryId", contains(last));
+    }
+
+    @Test
+    @Order(15)
+    void searchMatchesPrefixAndTypos() {
+        given().when().get("/search?q=harder bett")
+                .then()
+                .statusCode(200)
+                .body("songs[0].name", equalTo("Harder, Better, Faster, Stronger"));
+        given().when().get("/search?q=discovry")
+                .then()
+                .statusCode(200)
+                .body("albums.name", hasItem("Discovery"));
+        given().when().get("/search?q=%20").then().statusCode(400);
+    }
+
+    @Test
+    @Order(16)
+    void typeaheadFollowsWrites() {
+        given().when().get("/search/typeahead?q=harder b")
+                .then()
+                .statusCode(200)
+                .body("songs[0].name", equalTo("Harder, Better, Faster, Stronger"));
+
+        // A rename through the DAO is visible to the next lookup without a rebuild
+        int songId = given().when().get("/search/typeahead?q=aerodynamic").then().statusCode(200)
+                .body("songs[0].name", equalTo("Aerodynamic"))
+                .extract().path("songs[0].id");
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("""
+                                      {
+                                        "songName": "Aerodynamite",
+                                        "albumName": "Discovery",
+                                        "mainArtistName": "Daft Punk",
+                                        "genre": "Electronic",
+                                        "featuredArtist": "No featured artist",
+                                        "duration": "3:32"
+                                      }
+                        """)
+                .when()
+                .put("/songs/{id}", songId)
+                .then()
+                .statusCode(200);
+        given().when().get("/search/typeahead?q=aerodynami")
+                .then()
+                .statusCode(200)
+                .body("songs.name", hasItem("Aerodynamite"))
+                .body("songs.name", not(hasItem("Aerodynamic")));
+    }
+
+    @Test
+    @Order(17)
+    void conditionalGetAnswers304UntilChanged() {
+        String songETag = given().when().get("/songs/1").then().statusCode(200)
+                .extract().header("ETag");
+        String artistsETag = given().when().get("/artists").then().statusCode(200)
+                .extract().header("ETag");
+        assertThat(songETag, startsWith("\""));
+        assertThat(artistsETag, startsWith("W/\""));
+        given().header("If-None-Match", songETag).when().get("/songs/1").then().statusCode(304);
+        given().header("If-None-Match", artistsETag).when().get("/artists").then().statusCode(304);
+
+        // The song copies the artist's name, so renaming the artist changes the song's ETag too
+        renameArtist(1, "Daft Punk (ETag)");
+        given().header("If-None-Match", songETag).when().get("/songs/1").then()
+                .statusCode(200)
+                .header("ETag", not(equalTo(songETag)));
+        given().header("If-None-Match", artistsETag).when().get("/artists").then().statusCode(200);
+        renameArtist(1, "Daft Punk");
+
+        String playlistETag = given().when().get("/playlists/1").then().statusCode(200)
+                .extract().header("ETag");
+        given().header("If-None-Match", playlistETag).when().get("/playlists/1").then().statusCode(304);
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("{\"songIds\": [2]}")
+                .when()
+                .post("/playlists/1/songs")
+                .then()
+                .statusCode(200);
+        given().header("If-None-Match", playlistETag).when().get("/playlists/1").then().statusCode(200);
+    }
+
+    @Test
+    @Order(18)
+    void largeListsAreCompressedSmallBodiesAreNot() {
+        given().header("Accept-Encoding", "gzip")
+                .when().get("/songs?limit=1000")
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", "gzip")
+                .body("songs.size()", greaterThan(0));
+        // Below COMPRESSION_MIN_BYTES
+        given().header("Accept-Encoding", "gzip")
+                .when().get("/songs/1")
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", nullValue());
+    }
+
+    @Test
+    @Order(19)
+    void prometheusScrapeHasRouteTemplatesAndDaoTimers() {
+        given().when().get("/songs/1").then().statusCode(200);
+        // Fails the key check
+        given().when().get("/songs/999999").then().statusCode(400);
+
+        given().when().get("/metrics/prometheus").then().statusCode(401);
+        given().header("Authorization", "Bearer " + adminToken).when().get("/metrics/prometheus").then().statusCode(401);
+
+        String scrape = given()
+                .header("Authorization", "Bearer " + SCRAPE_TOKEN)
+                .when().get("/metrics/prometheus")
+                .then()
+                .statusCode(200)
+                .contentType(containsString("text/plain"))
+                .extract().asString();
+        // The template, not /api/songs/1
+        assertThat(scrape, containsString("http_request_duration_seconds_count{method=\"GET\",route=\"/api/songs/{id}\"}"));
+        assertThat(scrape, containsString("http_requests_total{method=\"GET\",route=\"/api/songs/{id}\",status=\"4xx\"}"));
+        assertThat(scrape, containsString("dao_operation_duration_seconds_bucket{dao=\"SongDAO\",operation=\"validatePrimaryKey\",le=\"+Inf\"}"));
+        assertThat(scrape, not(containsString("/api/songs/1\"")));
+    }
+
+    @Test
+    @Order(20)
+    // Key check + one projection query at most, no matter how big the EAGER graphs behind them are.
+    // The list endpoints are registered as get("/"), hence the trailing slash
+    @StatementBudget(route = "GET /api/songs/", max = 1)
+    @StatementBudget(route = "GET /api/songs/{id}", max = 2)
+    @StatementBudget(route = "GET /api/artists/", max = 1)
+    @StatementBudget(route = "GET /api/artists/{id}", max = 2)
+    @StatementBudget(route = "GET /api/artists/{id}/albums", max = 2)
+    @StatementBudget(route = "GET /api/playlists/", max = 1)
+    @StatementBudget(route = "GET /api/playlists/{id}", max = 2)
+    // The playlists, then their song ids
+    @StatementBudget(route = "GET /api/playlists/user/{username}", max = 2)
+    void readsStayWithinStatementBudget() {
+        // Not streamed, so the header can still be set after the handler
+        given().when().get("/songs/2")
+                .then()
+                .statusCode(200)
+                .header("X-Query-Count", startsWith("statements="));
+        given().when().get("/songs").then().statusCode(200);
+        given().when().get("/artists").then().statusCode(200);
+        given().when().get("/artists/1").then().statusCode(200);
+        given().when().get("/artists/1/albums").then().statusCode(200);
+        given().when().get("/playlists").then().statusCode(200);
+        given().when().get("/playlists/1").then().statusCode(200);
+        given().when().get("/playlists/user/jonas").then().statusCode(200);
+    }
+
+    @Test
+    @Order(21)
+    @StatementBudget(route = "GET /api/playlists/user/{username}", max = 2)
+    void playlistsByOwnerArePagedWithLinkHeader() {
+        // jonas owns one playlist in the sample data
+        for (String name : List.of("Paging One", "Paging Two")) {
+            given()
+                    .header("Authorization", "Bearer " + adminToken)
+                    .contentType("application/json")
+                    .body("{\"playListName\": \"" + name + "\", \"ownerUsername\": \"jonas\", \"songIds\": [1, 2]}")
+                    .when()
+                    .post("/playlists")
+                    .then()
+                    .statusCode(201);
+        }
+        List<Integer> all = given()
+                .when().get("/playlists/user/jonas")
+                .then()
+                .statusCode(200)
+                .extract().path("id");
+        assertThat(all.size(), greaterThan(1));
+
+        String link = given()
+                .when().get("/playlists/user/jonas?limit=1")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(1))
+                .body("[0].id", equalTo(all.get(0)))
+                .body("[0].songIds", notNullValue())
+                .header("Link", containsString("after=" + all.get(0)))
+                .extract().header("Link");
+        assertThat(link, endsWith("; rel=\"next\""));
+
+        given()
+                .when().get("/playlists/user/jonas?after=" + all.get(0) + "&limit=" + all.size())
+                .then()
+                .statusCode(200)
+                .body("id", equalTo(all.subList(1, all.size())))
+                // Not a full page, so the last one
+                .header("Link", nullValue());
+    }
+
+    @Test
+    @Order(22)
+    void concurrentAppendsKeepEverySong() throws Exception {
+        int playlistId = createPlaylist("Concurrent Appends");
+        int writers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                statuses.add(pool.submit(() -> {
+                    go.await();
+                    return given()
+                            .header("Authorization", "Bearer " + adminToken)
+                            .contentType("application/json")
+                            .body("{\"songIds\": [1, 2]}")
+                            .when()
+                            .post("/playlists/{id}/songs", playlistId)
+                            .then().extract().statusCode();
+                }));
+            }
+            go.countDown();
+            for (Future<Integer> status : statuses) {
+                // Without the playlist lock, appends computing the same positions fail on uk_playlist_songs_position
+                assertThat(status.get(30, TimeUnit.SECONDS), equalTo(200));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        given().when().get("/playlists/{id}", playlistId)
+                .then()
+                .statusCode(200)
+                .body("songIds.size()", equalTo(writers * 2));
+    }
+
+    @Test
+    @Order(23)
+    void removeEntryKeepsOtherCopiesOfTheSong() {
+        int playlistId = createPlaylist("Remove Entry");
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("{\"songIds\": [1, 2, 1]}")
+                .when()
+                .post("/playlists/{id}/songs", playlistId)
+                .then()
+                .statusCode(200);
+        List<Integer> entryIds = given().when().get("/playlists/{id}/songs", playlistId)
+                .then()
+                .statusCode(200)
+                .extract().jsonPath().getList("entryId", Integer.class);
+
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .when()
+                .delete("/playlists/{id}/entries/{entryId}", playlistId, entryIds.get(0))
+                .then()
+                .statusCode(200)
+                .body("songIds", contains(1));
+        given().when().get("/playlists/{id}", playlistId)
+                .then()
+                .statusCode(200)
+                .body("songIds", contains(2, 1));
+
+        // Already removed
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .when()
+                .delete("/playlists/{id}/entries/{entryId}", playlistId, entryIds.get(0))
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    @Order(24)
+    void deletingA0SecondSongChangesThePlaylistsETag() {
+        int songId = given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("""
+                                      {
+                                        "songName": "Silence",
+                                        "albumName": "Rest Assured Album",
+                                        "mainArtistName": "Daft Punk",
+                                        "genre": "Silence",
+                                        "duration": "0:00"
+                                      }
+                        """)
+                .when()
+                .post("/songs")
+                .then()
+                .statusCode(201)
+                .extract().path("songId");
+        int playlistId = createPlaylist("Silent Playlist");
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("{\"songIds\": [" + songId + "]}")
+                .when()
+                .post("/playlists/{id}/songs", playlistId)
+                .then()
+                .statusCode(200);
+        String etag = given().when().get("/playlists/{id}", playlistId).then().statusCode(200)
+                .body("songIds", contains(songId))
+                .extract().header("ETag");
+
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .when()
+                .delete("/songs/{id}", songId)
+                .then()
+                .statusCode(204);
+        // The total did not move, the entry list did
+        given()
+                .header("If-None-Match", etag)
+                .when().get("/playlists/{id}", playlistId)
+                .then()
+                .statusCode(200)
+                .body("songIds", empty());
+    }
+
+    private static int createPlaylist(String name) {
+        return given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("{\"playListName\": \"" + name + "\", \"ownerUsername\": \"jonas\"}")
+                .when()
+                .post("/playlists")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private static void renameArtist(int id, String name) {
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body("{\"artistName\": \"" + name + "\", \"type\": \"Electronic music duo\"}")
+                .when()
+                .put("/artists/{id}", id)
+                .then()
+                .statusCode(200)
+                .body("artistName", equalTo(name));
+    }
+
 }
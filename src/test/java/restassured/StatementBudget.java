@@ -0,0 +1,28 @@
+package restassured;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The most SQL statements one request to a route may run during the test, checked by StatementBudgetExtension.
+ * The route is the template as in the metrics, e.g. "GET /api/songs/{id}". Without a route the budget applies to
+ * every route the test calls that has no budget of its own.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Repeatable(StatementBudget.List.class)
+public @interface StatementBudget {
+
+    String route() default "";
+
+    int max();
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.METHOD, ElementType.TYPE})
+    @interface List {
+        StatementBudget[] value();
+    }
+}
@@ -0,0 +1,75 @@
+package restassured;
+
+import app.metrics.QueryCounter;
+import app.metrics.RequestMetrics;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Fails a test when a request it made ran more SQL statements than the route's @StatementBudget.
+ * The counts come from QueryCounter in the server the test started, so it needs the in-process server
+ * and QUERY_COUNT_SAMPLE_RATE=1 (the default outside deployment). Tests without a budget are not checked.
+ */
+public class StatementBudgetExtension implements BeforeEachCallback, AfterEachCallback {
+
+    private record Recorded(String route, QueryCounter.Counts counts) {
+    }
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(StatementBudgetExtension.class);
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        Queue<Recorded> recorded = new ConcurrentLinkedQueue<>();
+        BiConsumer<String, QueryCounter.Counts> listener = (route, counts) -> recorded.add(new Recorded(route, counts));
+        QueryCounter.addListener(listener);
+        context.getStore(NAMESPACE).put("recorded", recorded);
+        context.getStore(NAMESPACE).put("listener", listener);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterEach(ExtensionContext context) throws InterruptedException {
+        // The client can have the whole body of a streamed response before the server's after handler ran
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (RequestMetrics.getInstance().inFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        QueryCounter.removeListener(context.getStore(NAMESPACE).remove("listener", BiConsumer.class));
+        Queue<Recorded> recorded = context.getStore(NAMESPACE).remove("recorded", Queue.class);
+
+        Map<String, Integer> budgets = new HashMap<>();
+        List<StatementBudget> annotations = new ArrayList<>(
+                AnnotationSupport.findRepeatableAnnotations(context.getRequiredTestClass(), StatementBudget.class));
+        // Method budgets override class budgets for the same route
+        annotations.addAll(AnnotationSupport.findRepeatableAnnotations(context.getRequiredTestMethod(), StatementBudget.class));
+        for (StatementBudget budget : annotations) {
+            budgets.put(budget.route(), budget.max());
+        }
+        if (budgets.isEmpty()) {
+            return;
+        }
+
+        List<String> violations = new ArrayList<>();
+        for (Recorded r : recorded) {
+            Integer max = budgets.getOrDefault(r.route(), budgets.get(""));
+            if (max != null && r.counts().statements() > max) {
+                violations.add(String.format("%s ran %d statements, budget %d (%s); most repeated, %d times: %s",
+                        r.route(), r.counts().statements(), max, r.counts(),
+                        r.counts().repeatedCount(), r.counts().repeatedStatement()));
+            }
+        }
+        if (!violations.isEmpty()) {
+            throw new AssertionError("Statement budget exceeded:\n" + String.join("\n", violations));
+        }
+    }
+}